@@ -0,0 +1,59 @@
+package dashboard.benchmark;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the production analysis chain, one operation being the analysis of one document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+    private static final int DOCUMENTS = 64;
+    private static final int STEM_CACHE_ENTRIES = 200000;
+    private static final long SEED = 42;
+
+    @Param({"100", "1000", "10000"})
+    public int words;
+
+    private Analyzer analyzer;
+    private List<String> documents;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        analyzer = BenchmarkSupport.createAnalyzer(STEM_CACHE_ENTRIES);
+        documents = new RomanianCorpus(SEED).documents(DOCUMENTS, words);
+    }
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+    @Benchmark
+    public void analyzeDocument(Blackhole blackhole) throws IOException {
+        BenchmarkSupport.consumeTokens(analyzer, documents.get(next++ % DOCUMENTS), blackhole);
+    }
+
+}
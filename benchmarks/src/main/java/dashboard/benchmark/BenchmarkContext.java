@@ -0,0 +1,96 @@
+package dashboard.benchmark;
+
+import dashboard.config.AnalyzerConfiguration;
+import dashboard.config.IndexDirectoryConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * The production components wired by Spring outside the web application, over a temporary documents directory
+ * filled with synthetic text and a temporary index. Result and fragment caches are disabled, so every invocation
+ * does the full work being measured.
+ */
+public class BenchmarkContext implements AutoCloseable {
+    private static final String LOGGER_PACKAGE = "dashboard";
+    private static final String PROPERTY_SOURCE = "benchmark";
+    private static final String DOCUMENT_FILE = "document-%05d.txt";
+
+    private final Path workDirectory;
+    private final Path documentsDirectory;
+    private final Map<String, Object> properties = new HashMap<>();
+    private AnnotationConfigApplicationContext context;
+
+    public BenchmarkContext() throws IOException {
+        Logger.getLogger(LOGGER_PACKAGE).setLevel(Level.WARN);
+
+        workDirectory = Files.createTempDirectory(PROPERTY_SOURCE);
+        documentsDirectory = Files.createDirectory(workDirectory.resolve("documents"));
+
+        properties.put("index.directory.path", workDirectory.resolve("index").toString());
+        properties.put("documents.directory.path", documentsDirectory.toString());
+        properties.put("indexer.incremental", false);
+        properties.put("cache.query.results.max.entries", 0);
+        properties.put("cache.fragments.max.bytes", 0);
+    }
+
+    public BenchmarkContext withProperty(String name, Object value) {
+        properties.put(name, value);
+        return this;
+    }
+
+    public List<File> writeDocuments(List<String> documents) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Path file = documentsDirectory.resolve(String.format(DOCUMENT_FILE, i));
+            Files.write(file, documents.get(i).getBytes(StandardCharsets.UTF_8));
+            files.add(file.toFile());
+        }
+        return files;
+    }
+
+    /**
+     * Starts the given components, together with the analyzer and index directory configurations. The indexer
+     * indexes the documents written so far while starting up.
+     */
+    public BenchmarkContext start(Class<?>... components) {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(PROPERTY_SOURCE, properties));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(AnalyzerConfiguration.class, IndexDirectoryConfiguration.class);
+        context.register(components);
+        context.refresh();
+        return this;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (Objects.nonNull(context)) {
+            context.close();
+        }
+        try (Stream<Path> paths = Files.walk(workDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+}
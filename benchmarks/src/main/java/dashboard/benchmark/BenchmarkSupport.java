@@ -0,0 +1,43 @@
+package dashboard.benchmark;
+
+import dashboard.core.analyzer.RomanianAnalyzerWithASCIIFolding;
+import dashboard.core.analyzer.StemCache;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+final class BenchmarkSupport {
+    private static final String STOPWORDS = "/stopwords.txt";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Builds the production analyzer with the bundled stopwords; a non positive capacity disables the stem cache.
+     */
+    static RomanianAnalyzerWithASCIIFolding createAnalyzer(int stemCacheEntries) throws IOException {
+        try (InputStream stopwords = RomanianAnalyzerWithASCIIFolding.class.getResourceAsStream(STOPWORDS)) {
+            return new RomanianAnalyzerWithASCIIFolding(RomanianAnalyzerWithASCIIFolding.loadStopwords(stopwords),
+                    new StemCache(stemCacheEntries));
+        }
+    }
+
+    static void consumeTokens(Analyzer analyzer, String text, Blackhole blackhole) throws IOException {
+        try (TokenStream tokenStream = analyzer.tokenStream(null, text)) {
+            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                blackhole.consume(charTermAttribute.length());
+            }
+            tokenStream.end();
+        }
+    }
+
+}
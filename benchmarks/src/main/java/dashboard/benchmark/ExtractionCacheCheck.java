@@ -0,0 +1,202 @@
+package dashboard.benchmark;
+
+import dashboard.core.ingestion.ContentExtractor;
+import dashboard.core.ingestion.ExtractionCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Checks that the extraction cache survives what it has to survive: entries written in one session are served in the
+ * next without extracting again, a record cut short at the end of a segment only loses that record, and compaction
+ * keeps every live entry while reclaiming the texts that were replaced or whose file is gone.
+ * <p>
+ * Run with {@code java -cp benchmarks.jar dashboard.benchmark.ExtractionCacheCheck}; it exits with status 1 on the
+ * first failed expectation.
+ */
+public final class ExtractionCacheCheck {
+    private static final String MIME_TYPE = "text/plain";
+    private static final String SEGMENT_GLOB = "extraction-*.seg";
+    private static final String ASCII_TEXT = "zmeul zboara peste padurea deasa";
+    private static final String DIACRITICS_TEXT = "ăîșțâ ăîșțâ ăîșțâ ăîșțâ ăîșțâ ăîșțâ";
+    private static final String LONG_TEXT = String.join(" ", Collections.nCopies(200, "balaurul doarme"));
+    private static final int UNLIMITED = 0;
+    private static final int TRUNCATED_TAIL_BYTES = 10;
+
+    private final Path workDirectory;
+    private final Path cacheDirectory;
+    private final AtomicInteger extractions = new AtomicInteger();
+    private int checks;
+
+    private ExtractionCacheCheck(Path workDirectory) {
+        this.workDirectory = workDirectory;
+        this.cacheDirectory = workDirectory.resolve("cache");
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path workDirectory = Files.createTempDirectory("extraction-cache");
+        try {
+            ExtractionCacheCheck check = new ExtractionCacheCheck(workDirectory);
+            check.checkRoundTrip();
+            check.checkTruncatedTail();
+            check.checkCompaction();
+            System.out.println(String.format("Extraction cache passed %d checks.", check.checks));
+        } finally {
+            try (Stream<Path> paths = Files.walk(workDirectory)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * A text with diacritics takes more UTF-8 bytes than characters, so it must still be served for a character limit
+     * between the two.
+     */
+    private void checkRoundTrip() throws IOException {
+        File ascii = writeFile("ascii.txt", ASCII_TEXT);
+        File diacritics = writeFile("diacritics.txt", DIACRITICS_TEXT);
+
+        try (ExtractionCache cache = ExtractionCache.open(cacheDirectory)) {
+            extract(cache, ascii, UNLIMITED);
+            extract(cache, diacritics, UNLIMITED);
+        }
+        expect(extractions.get() == 2, "the first session extracts every file");
+
+        try (ExtractionCache cache = ExtractionCache.open(cacheDirectory)) {
+            expect(ASCII_TEXT.equals(extract(cache, ascii, UNLIMITED).getText()), "the ascii text comes back");
+            expect(DIACRITICS_TEXT.equals(extract(cache, diacritics, UNLIMITED).getText()),
+                    "the text with diacritics comes back");
+            expect(DIACRITICS_TEXT.equals(extract(cache, diacritics, DIACRITICS_TEXT.length()).getText()),
+                    "a complete text is served for a limit of exactly its characters");
+            expect(cache.getHits() == 3 && cache.getMisses() == 0, "the reopened cache answers from disk");
+        }
+        expect(extractions.get() == 2, "the reopened cache never extracts");
+    }
+
+    /**
+     * Cuts the last record of the newest segment in the middle of its text, as a crash during the append would.
+     */
+    private void checkTruncatedTail() throws IOException {
+        File ascii = writeFile("ascii.txt", ASCII_TEXT);
+        File last = writeFile("last.txt", LONG_TEXT);
+
+        try (ExtractionCache cache = ExtractionCache.open(cacheDirectory)) {
+            extract(cache, last, UNLIMITED);
+        }
+        Path segment = listSegments().get(listSegments().size() - 1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - TRUNCATED_TAIL_BYTES);
+        }
+
+        int extractionsBefore = extractions.get();
+        try (ExtractionCache cache = ExtractionCache.open(cacheDirectory)) {
+            expect(ASCII_TEXT.equals(extract(cache, ascii, UNLIMITED).getText()),
+                    "records before the cut are still served");
+            expect(extractions.get() == extractionsBefore, "records before the cut are not extracted again");
+            expect(LONG_TEXT.equals(extract(cache, last, UNLIMITED).getText()), "the cut record is extracted again");
+            expect(extractions.get() == extractionsBefore + 1, "only the cut record is extracted again");
+        }
+    }
+
+    /**
+     * Extracting the same content again under new character limits supersedes its record each time; those texts and
+     * the ones of deleted files have to be reclaimed by compaction.
+     */
+    private void checkCompaction() throws IOException {
+        File ascii = writeFile("ascii.txt", ASCII_TEXT);
+        File diacritics = writeFile("diacritics.txt", DIACRITICS_TEXT);
+        File replaced = writeFile("replaced.txt", LONG_TEXT);
+
+        try (ExtractionCache cache = ExtractionCache.open(cacheDirectory)) {
+            for (int limit = 100; limit < 120; limit++) {
+                extract(cache, replaced, limit);
+            }
+            Files.delete(writeFile("last.txt", LONG_TEXT).toPath());
+            long bytesBefore = countSegmentBytes();
+            cache.collectGarbage();
+
+            expect(countSegmentBytes() < bytesBefore, "compaction reclaims superseded and deleted texts");
+            expect(listSegments().size() == 1, "compaction leaves a single segment");
+        }
+
+        int extractionsBefore = extractions.get();
+        try (ExtractionCache cache = ExtractionCache.open(cacheDirectory)) {
+            expect(ASCII_TEXT.equals(extract(cache, ascii, UNLIMITED).getText()), "live entries survive compaction");
+            expect(DIACRITICS_TEXT.equals(extract(cache, diacritics, UNLIMITED).getText()),
+                    "live entries with diacritics survive compaction");
+            expect(LONG_TEXT.substring(0, 119).equals(extract(cache, replaced, 119).getText()),
+                    "the latest record of superseded content survives compaction");
+        }
+        expect(extractions.get() == extractionsBefore, "entries kept by compaction are not extracted again");
+    }
+
+    private ContentExtractor.Extraction extract(ExtractionCache cache, File file, int maxChars) {
+        return cache.extract(file, maxChars, extractor(maxChars));
+    }
+
+    /**
+     * Stands in for Tika: the file is plain UTF-8 text and the limit is applied the same way.
+     */
+    private Function<File, ContentExtractor.Extraction> extractor(int maxChars) {
+        return file -> {
+            extractions.incrementAndGet();
+            try {
+                String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                if (maxChars > 0 && text.length() > maxChars) {
+                    return new ContentExtractor.Extraction(text.substring(0, maxChars), MIME_TYPE,
+                            ContentExtractor.Status.TRUNCATED, null);
+                }
+                return new ContentExtractor.Extraction(text, MIME_TYPE, ContentExtractor.Status.EXTRACTED, null);
+            } catch (IOException e) {
+                return new ContentExtractor.Extraction("", MIME_TYPE, ContentExtractor.Status.FAILED, e);
+            }
+        };
+    }
+
+    private File writeFile(String name, String text) throws IOException {
+        Path file = workDirectory.resolve(name);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDirectory, SEGMENT_GLOB)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private long countSegmentBytes() throws IOException {
+        long bytes = 0;
+        for (Path segment : listSegments()) {
+            bytes += Files.size(segment);
+        }
+        return bytes;
+    }
+
+    private void expect(boolean condition, String expectation) {
+        checks++;
+        if (!condition) {
+            System.err.println("Extraction cache check failed: " + expectation);
+            System.exit(1);
+        }
+    }
+
+}
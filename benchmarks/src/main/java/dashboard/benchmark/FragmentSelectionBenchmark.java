@@ -0,0 +1,74 @@
+package dashboard.benchmark;
+
+import dashboard.service.HighlighterService;
+import dashboard.utils.Constants;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Highlighting cost against the number of matches in a document of fixed length, so the growth comes from fragment
+ * selection rather than from analyzing more text. It should stay close to linear in {@link #matches}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FragmentSelectionBenchmark {
+    private static final int WORDS = 20000;
+    private static final String[] MATCHED_WORDS = {"zmeu", "balaur"};
+    private static final String QUERY = String.join(" ", MATCHED_WORDS);
+    private static final long SEED = 42;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int matches;
+
+    private BenchmarkContext context;
+    private HighlighterService highlighterService;
+    private Document document;
+
+    @Setup
+    public void setUp() throws IOException {
+        RomanianCorpus corpus = new RomanianCorpus(SEED);
+        int spacing = WORDS / matches;
+
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < WORDS; i++) {
+            String word = i % spacing == 0 ? MATCHED_WORDS[i / spacing % MATCHED_WORDS.length] : corpus.nextWord();
+            content.append(word).append(' ');
+        }
+
+        document = new Document();
+        document.add(new StoredField(Constants.CONTENT, content.toString().trim()));
+
+        context = new BenchmarkContext().start(HighlighterService.class);
+        highlighterService = context.getBean(HighlighterService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public String highlight() throws IOException {
+        return highlighterService.getHighlightedFragments(document, QUERY);
+    }
+
+}
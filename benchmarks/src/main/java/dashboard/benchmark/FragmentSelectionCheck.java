@@ -0,0 +1,366 @@
+package dashboard.benchmark;
+
+import dashboard.resource.Fragment;
+import dashboard.resource.Token;
+import dashboard.service.HighlighterService;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Checks that the linear fragment selection of {@link HighlighterService} picks exactly what the quadratic version it
+ * replaced picked. The old {@code mergeFragments}, {@code analyseBestFragments} and {@code getHighlightedBestTokens}
+ * are kept here verbatim and both versions run on the same fixed inputs: hand written cases covering ties, duplicates,
+ * touching, nested and chained overlapping runs, then seeded random ones. The service methods are private and are
+ * called by reflection.
+ * <p>
+ * Run with {@code java -cp benchmarks.jar dashboard.benchmark.FragmentSelectionCheck}; it exits with status 1 on the
+ * first disagreement.
+ */
+public final class FragmentSelectionCheck {
+    private static final String SPACE_STRING = " ";
+    private static final String CONTENT = "zmeul zboara peste padurea deasa si balaurul doarme sub muntele inalt "
+            + "iar zmeul cauta balaurul prin padurea intunecata pana cand soarele apune peste muntele vechi";
+    private static final List<String> TERMS = Arrays.asList("a", "b", "c", "d", "e");
+    private static final List<String> MATCHED_WORDS = Arrays.asList("zmeu", "balaur", "padure");
+    private static final List<String> TOKEN_TEXTS = Arrays.asList(
+            "zmeu balaur zmeu",
+            "zmeu zmeu balaur balaur",
+            "padure zmeu zmeu zmeu balaur",
+            "zmeu codru balaur codru zmeu balaur zmeu",
+            "balaur codru codru zmeu codru codru balaur",
+            "zmeu",
+            "padure codru");
+    private static final int RANDOM_CASES = 500;
+    private static final int MAX_RANDOM_FRAGMENTS = 12;
+    private static final int MAX_RANDOM_WORDS = 40;
+    private static final long SEED = 42;
+
+    private final HighlighterService highlighterService;
+    private final Map<String, String> analyzedWords = new HashMap<>();
+    private int cases;
+
+    private FragmentSelectionCheck(HighlighterService highlighterService) {
+        this.highlighterService = highlighterService;
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (BenchmarkContext context = new BenchmarkContext().start(HighlighterService.class)) {
+            FragmentSelectionCheck check = new FragmentSelectionCheck(context.getBean(HighlighterService.class));
+            check.checkAnalyseBestFragments();
+            check.checkMergeFragments();
+            check.checkHighlightedBestTokens();
+            System.out.println(String.format("Old and new fragment selection agree on %d cases.", check.cases));
+        }
+    }
+
+    private void checkAnalyseBestFragments() throws ReflectiveOperationException {
+        List<int[][]> fixedCases = Arrays.asList(
+                new int[][]{},
+                new int[][]{{0, 0}},
+                new int[][]{{0}, {0}},
+                new int[][]{{0}, {0}, {0}},
+                new int[][]{{0}, {0, 1}, {1}},
+                new int[][]{{0}, {0, 1}, {1, 2}, {2}},
+                new int[][]{{0, 1}, {2, 3}, {0, 1}, {2, 3}},
+                new int[][]{{0, 1}, {1, 2}, {2, 0}},
+                new int[][]{{}, {0}, {}},
+                new int[][]{{0, 1, 2}, {0}, {1}, {2}, {3}});
+        for (int[][] fixedCase : fixedCases) {
+            compareAnalyse(fragmentsOf(fixedCase, 10));
+        }
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            compareAnalyse(randomFragments(random, false));
+        }
+    }
+
+    private void checkMergeFragments() throws ReflectiveOperationException {
+        List<int[][]> fixedCases = Arrays.asList(
+                new int[][]{{0, 10, 0}, {20, 30, 1}},
+                new int[][]{{0, 10, 0}, {10, 20, 1}},
+                new int[][]{{5, 15, 0}, {10, 25, 1}, {20, 40, 0}, {50, 60, 2}},
+                new int[][]{{10, 50, 0}, {20, 30, 1}, {60, 70, 0}},
+                new int[][]{{0, 5, 0}, {30, 40, 1}, {35, 45, 0}, {44, 50, 2}},
+                new int[][]{{0, 10, 0}, {20, 30, 0}, {40, 50, 1}, {45, 55, 1}},
+                new int[][]{{3, 8, 0}, {8, 12, 0}, {12, 16, 0}, {30, 40, 1}, {30, 40, 1}},
+                new int[][]{{40, 50, 0}, {60, 70, 1}, {65, 80, 2}, {90, 100, 0}, {95, 110, 1}});
+        for (int[][] fixedCase : fixedCases) {
+            List<Fragment> fragments = new ArrayList<>();
+            for (int[] fragment : fixedCase) {
+                fragments.add(createFragment(fragment[0], fragment[1],
+                        new HashSet<>(Collections.singleton(TERMS.get(fragment[2])))));
+            }
+            compareMerge(fragments);
+        }
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            compareMerge(randomFragments(random, true));
+        }
+    }
+
+    private void checkHighlightedBestTokens() throws ReflectiveOperationException {
+        Set<String> clauses = new LinkedHashSet<>();
+        for (String word : MATCHED_WORDS) {
+            clauses.add(analyzeWord(word));
+        }
+
+        for (String text : TOKEN_TEXTS) {
+            compareBestTokens(text, clauses);
+        }
+
+        RomanianCorpus corpus = new RomanianCorpus(SEED);
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            List<String> words = new ArrayList<>();
+            int length = 1 + random.nextInt(MAX_RANDOM_WORDS);
+            for (int j = 0; j < length; j++) {
+                words.add(random.nextInt(3) == 0 ? MATCHED_WORDS.get(random.nextInt(MATCHED_WORDS.size()))
+                        : corpus.nextWord());
+            }
+            compareBestTokens(String.join(SPACE_STRING, words), clauses);
+        }
+    }
+
+    private void compareAnalyse(List<Fragment> fragments) throws ReflectiveOperationException {
+        List<Fragment> expected = oldAnalyseBestFragments(copy(fragments));
+        @SuppressWarnings("unchecked")
+        List<Fragment> actual = (List<Fragment>) invoke("analyseBestFragments", new Class<?>[]{List.class},
+                copy(fragments));
+        compare("analyseBestFragments", describe(fragments), describe(expected), describe(actual));
+    }
+
+    private void compareMerge(List<Fragment> fragments) throws ReflectiveOperationException {
+        List<Fragment> expected = oldMergeFragments(copy(fragments), CONTENT);
+        @SuppressWarnings("unchecked")
+        List<Fragment> actual = (List<Fragment>) invoke("mergeFragments", new Class<?>[]{List.class, String.class},
+                copy(fragments), CONTENT);
+        compare("mergeFragments", describe(fragments), describe(expected), describe(actual));
+    }
+
+    private void compareBestTokens(String text, Set<String> clauses) throws ReflectiveOperationException {
+        Fragment fragment = createFragment(0, 0, new HashSet<>());
+        fragment.setText(text);
+
+        Map<String, Integer> expected = oldGetHighlightedBestTokens(fragment, new ArrayList<>(clauses));
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> actual = (Map<String, Integer>) invoke("getHighlightedBestTokens",
+                new Class<?>[]{Fragment.class, Set.class, Map.class}, fragment, clauses, analyzedWords);
+        compare("getHighlightedBestTokens", text, new TreeMap<>(expected).toString(),
+                new TreeMap<>(actual).toString());
+    }
+
+    private void compare(String method, String input, String expected, String actual) {
+        cases++;
+        if (!expected.equals(actual)) {
+            System.err.println(String.format("%s differs for %s%n  old: %s%n  new: %s", method, input, expected,
+                    actual));
+            System.exit(1);
+        }
+    }
+
+    private Object invoke(String name, Class<?>[] parameterTypes, Object... arguments)
+            throws ReflectiveOperationException {
+        Method method = HighlighterService.class.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        try {
+            return method.invoke(highlighterService, arguments);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(name + " failed", e.getCause());
+        }
+    }
+
+    private String analyzeWord(String word) throws ReflectiveOperationException {
+        return (String) invoke("analyzeWord", new Class<?>[]{String.class, Map.class}, word, analyzedWords);
+    }
+
+    private List<Fragment> randomFragments(Random random, boolean ordered) {
+        int count = random.nextInt(MAX_RANDOM_FRAGMENTS + 1);
+        List<Fragment> fragments = new ArrayList<>();
+        int start = random.nextInt(10);
+        for (int i = 0; i < count; i++) {
+            int fragmentStart = ordered ? start : random.nextInt(CONTENT.length() - 1);
+            int fragmentEnd = Math.min(CONTENT.length(), fragmentStart + 1 + random.nextInt(30));
+
+            Set<String> terms = new HashSet<>();
+            int termCount = random.nextInt(4);
+            for (int j = 0; j < termCount; j++) {
+                terms.add(TERMS.get(random.nextInt(TERMS.size())));
+            }
+            fragments.add(createFragment(fragmentStart, fragmentEnd, terms));
+
+            start = Math.min(CONTENT.length() - 1, start + random.nextInt(25));
+        }
+        return fragments;
+    }
+
+    private List<Fragment> fragmentsOf(int[][] termIndexes, int width) {
+        List<Fragment> fragments = new ArrayList<>();
+        for (int i = 0; i < termIndexes.length; i++) {
+            Set<String> terms = new HashSet<>();
+            for (int termIndex : termIndexes[i]) {
+                terms.add(TERMS.get(termIndex));
+            }
+            fragments.add(createFragment(i * width, i * width + width / 2, terms));
+        }
+        return fragments;
+    }
+
+    private Fragment createFragment(int startOffset, int endOffset, Set<String> terms) {
+        Fragment fragment = new Fragment();
+        fragment.setStartOffset(startOffset);
+        fragment.setEndOffset(endOffset);
+        fragment.setText(CONTENT.substring(startOffset, endOffset));
+        fragment.setTerms(terms);
+        return fragment;
+    }
+
+    /**
+     * Both versions change the fragments they are given, so each one works on its own copy.
+     */
+    private List<Fragment> copy(List<Fragment> fragments) {
+        List<Fragment> copies = new ArrayList<>();
+        for (Fragment fragment : fragments) {
+            Fragment copy = createFragment(fragment.getStartOffset(), fragment.getEndOffset(),
+                    new HashSet<>(fragment.getTerms()));
+            copy.setText(fragment.getText());
+            copy.setContentLength(fragment.getContentLength());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private String describe(List<Fragment> fragments) {
+        List<String> descriptions = new ArrayList<>();
+        for (Fragment fragment : fragments) {
+            descriptions.add(String.format("[%d-%d %s '%s' /%d]", fragment.getStartOffset(), fragment.getEndOffset(),
+                    new TreeSet<>(fragment.getTerms()), fragment.getText(), fragment.getContentLength()));
+        }
+        return descriptions.toString();
+    }
+
+    private List<Fragment> oldMergeFragments(List<Fragment> fragments, String content) {
+        List<Fragment> mergedFragments = new ArrayList<>();
+
+        int start = 0;
+        int end = 0;
+        for (Fragment fragment : fragments) {
+            if (fragment.getStartOffset() <= end) {
+                start = Math.min(start, fragment.getStartOffset());
+                end = Math.max(end, fragment.getEndOffset());
+
+                Fragment mergedFragment = oldCreateAndEnrichFragment(content, start, end, fragment);
+
+                if (!mergedFragments.isEmpty()) {
+                    Fragment lastAddedFragment = mergedFragments.get(mergedFragments.size() - 1);
+                    mergedFragment.getTerms().addAll(lastAddedFragment.getTerms());
+                    mergedFragments.remove(lastAddedFragment);
+                }
+                mergedFragments.add(mergedFragment);
+            } else {
+                start = fragment.getStartOffset();
+                end = fragment.getEndOffset();
+                fragment.setContentLength(content.length());
+
+                mergedFragments.add(fragment);
+            }
+        }
+        return oldAnalyseBestFragments(mergedFragments);
+    }
+
+    private Fragment oldCreateAndEnrichFragment(String content, int startOffset, int endOffset, Fragment fragment) {
+        Fragment mergedFragment = new Fragment();
+        mergedFragment.setStartOffset(startOffset);
+        mergedFragment.setEndOffset(endOffset);
+        mergedFragment.setText(content.substring(startOffset, endOffset));
+        mergedFragment.setContentLength(content.length());
+        mergedFragment.setTerms(fragment.getTerms());
+        return mergedFragment;
+    }
+
+    private List<Fragment> oldAnalyseBestFragments(List<Fragment> fragments) {
+        List<Fragment> finalFragments = new ArrayList<>();
+
+        Set<Fragment> deletedFragments = new HashSet<>();
+        for (int i = 0; i < fragments.size(); i++) {
+            Fragment fragment = fragments.get(i);
+            Set<String> fragmentTerms = new HashSet<>(fragment.getTerms());
+            Set<String> copyOfFragmentTerms = new HashSet<>(fragment.getTerms());
+
+            for (int j = 0; j < fragments.size(); j++) {
+                if (j != i && !deletedFragments.contains(fragments.get(j))) {
+                    Fragment secondTempFragments = fragments.get(j);
+                    for (String term : fragmentTerms) {
+                        if (secondTempFragments.getTerms().contains(term)) {
+                            copyOfFragmentTerms.remove(term);
+                        }
+                    }
+                }
+            }
+
+            if (copyOfFragmentTerms.isEmpty()) {
+                deletedFragments.add(fragment);
+            } else {
+                finalFragments.add(fragment);
+            }
+        }
+        finalFragments.sort(Comparator.comparing(Fragment::getTermsSize).reversed()
+                .thenComparing(Fragment::getStartOffset));
+
+        return finalFragments;
+    }
+
+    private Map<String, Integer> oldGetHighlightedBestTokens(Fragment fragment, List<String> clauses)
+            throws ReflectiveOperationException {
+
+        int position = 0;
+        int offset = 0;
+        List<Token> tokens = new ArrayList<>();
+        Map<String, Integer> results = new HashMap<>();
+        Map<String, Integer> positions = new HashMap<>();
+
+        for (String word : fragment.getText().split(SPACE_STRING)) {
+            String term = analyzeWord(word);
+
+            if (clauses.contains(term)) {
+                tokens.add(new Token(term, offset, offset + word.length(), position));
+            }
+
+            offset += word.length() + SPACE_STRING.length();
+            position++;
+        }
+
+        for (Token token : tokens) {
+            int distance = 0;
+            for (Token token1 : tokens) {
+                distance += Math.abs(token1.getPosition() - token.getPosition());
+            }
+
+            results.putIfAbsent(token.getToken(), distance);
+            positions.putIfAbsent(token.getToken(), token.getPosition());
+
+            if (results.get(token.getToken()) > distance) {
+                results.put(token.getToken(), distance);
+                positions.put(token.getToken(), token.getPosition());
+            }
+        }
+
+        return positions;
+    }
+
+}
@@ -0,0 +1,86 @@
+package dashboard.benchmark;
+
+import dashboard.core.Indexer;
+import dashboard.service.HighlighterService;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of highlighting one document against its size, reading match offsets from the term vector and the content from
+ * the index as the search path does, and re-analyzing the stored content as done when the index has no offsets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HighlighterBenchmark {
+    private static final int QUERIES = 64;
+    private static final int QUERY_TERMS = 3;
+    private static final long SEED = 42;
+
+    @Param({"500", "5000", "50000"})
+    public int words;
+
+    private BenchmarkContext context;
+    private HighlighterService highlighterService;
+    private IndexReader indexReader;
+    private Document document;
+    private List<String> queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        RomanianCorpus corpus = new RomanianCorpus(SEED);
+
+        context = new BenchmarkContext();
+        context.writeDocuments(Collections.singletonList(corpus.document(words)));
+        context.start(Indexer.class, HighlighterService.class);
+        highlighterService = context.getBean(HighlighterService.class);
+
+        indexReader = DirectoryReader.open(context.getBean(Indexer.class).getIndexWriter());
+        document = indexReader.document(0);
+
+        queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(corpus.query(QUERY_TERMS));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexReader.close();
+        context.close();
+    }
+
+    @Benchmark
+    public String highlightFromTermVector() throws IOException {
+        return highlighterService.getHighlightedFragments(indexReader, 0, queries.get(next++ % QUERIES));
+    }
+
+    @Benchmark
+    public String highlightFromContent() throws IOException {
+        return highlighterService.getHighlightedFragments(document, queries.get(next++ % QUERIES));
+    }
+
+}
@@ -0,0 +1,85 @@
+package dashboard.benchmark;
+
+import dashboard.core.Indexer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing rate split in its two halves: {@link Indexer#buildDocument} extracts a text file through Tika, and
+ * adding a prebuilt document to the writer measures analysis and inversion. The index is emptied after every
+ * iteration so it does not grow across the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexingBenchmark {
+    private static final int DOCUMENTS = 64;
+    private static final long SEED = 42;
+
+    @Param({"100", "1000", "10000"})
+    public int words;
+
+    private BenchmarkContext context;
+    private Indexer indexer;
+    private List<File> files;
+    private List<Document> documents;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = new BenchmarkContext();
+        files = context.writeDocuments(new RomanianCorpus(SEED).documents(DOCUMENTS, words));
+        indexer = context.start(Indexer.class).getBean(Indexer.class);
+
+        documents = new ArrayList<>();
+        for (File file : files) {
+            documents.add(indexer.buildDocument(file));
+        }
+        emptyIndex();
+    }
+
+    @TearDown(Level.Iteration)
+    public void emptyIndex() throws IOException {
+        IndexWriter indexWriter = indexer.getIndexWriter();
+        indexWriter.deleteAll();
+        indexWriter.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public Document buildDocument() {
+        return indexer.buildDocument(files.get(next++ % DOCUMENTS));
+    }
+
+    @Benchmark
+    public long addDocument() throws IOException {
+        return indexer.getIndexWriter().addDocument(documents.get(next++ % DOCUMENTS));
+    }
+
+}
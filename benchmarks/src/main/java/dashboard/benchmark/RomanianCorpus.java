@@ -0,0 +1,118 @@
+package dashboard.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic Romanian text. Inflected word forms are built from common stems and endings, drawn with a
+ * Zipf distribution and mixed with function words, so repetition and stemming load resemble real documents.
+ */
+public class RomanianCorpus {
+    private static final String SPACE = " ";
+    private static final String PERIOD = ".";
+    private static final double FUNCTION_WORD_PROBABILITY = 0.3;
+    private static final int MIN_SENTENCE_LENGTH = 6;
+    private static final int MAX_SENTENCE_LENGTH = 20;
+
+    private static final List<String> STEMS = Arrays.asList(
+            "cas", "cărț", "drum", "munt", "râu", "oraș", "țar", "școal", "profesor", "student",
+            "lucr", "guvern", "ministr", "leg", "drept", "instanț", "judecător", "avocat", "contract", "societ",
+            "firm", "bănc", "credit", "împrumut", "dobând", "pieț", "preț", "produs", "servici", "client",
+            "angajat", "salari", "impozit", "tax", "buget", "economi", "industri", "agricultur", "energi", "transport",
+            "sănătat", "spital", "medic", "boal", "tratament", "copil", "famili", "părint", "prieten", "femei",
+            "bărbat", "țăran", "muncitor", "inginer", "calculator", "program", "sistem", "rețe", "informați",
+            "document", "fișier", "căut", "rezultat", "interogar", "cuvânt", "text", "limb", "istori", "cultur",
+            "muzic", "film", "teatr", "poezi", "roman", "scriitor", "autor", "cititor", "timp", "săptămân", "dimineaț",
+            "pământ", "soar", "stea", "pădur", "câmp", "lac", "vânt", "ploai", "zăpad", "iarn",
+            "primăvar", "toamn", "războ", "pac", "libertat", "adevăr", "frumuseț", "bucuri", "tristeț", "speranț");
+
+    private static final List<String> ENDINGS = Arrays.asList(
+            "", "ul", "ului", "uri", "urilor", "a", "ei", "e", "ele", "elor",
+            "ă", "ii", "ilor", "ie", "iei", "ări", "ările", "ește", "esc", "ind");
+
+    private static final List<String> FUNCTION_WORDS = Arrays.asList(
+            "și", "de", "la", "în", "cu", "pe", "că", "nu", "o", "un",
+            "din", "pentru", "este", "sunt", "care", "mai", "sau", "dar", "prin", "după");
+
+    private final Random random;
+    private final List<String> vocabulary = new ArrayList<>();
+    private final double[] cumulativeWeights;
+
+    public RomanianCorpus(long seed) {
+        this.random = new Random(seed);
+
+        for (String stem : STEMS) {
+            for (String ending : ENDINGS) {
+                vocabulary.add(stem + ending);
+            }
+        }
+        Collections.shuffle(vocabulary, random);
+
+        cumulativeWeights = new double[vocabulary.size()];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary.size(); rank++) {
+            total += 1.0 / (rank + 1);
+            cumulativeWeights[rank] = total;
+        }
+    }
+
+    public int getVocabularySize() {
+        return vocabulary.size();
+    }
+
+    public String nextWord() {
+        double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = Arrays.binarySearch(cumulativeWeights, target);
+        return vocabulary.get(index >= 0 ? index : -index - 1);
+    }
+
+    public String document(int words) {
+        StringBuilder document = new StringBuilder();
+        int sentenceLength = 0;
+        int nextSentenceLength = nextSentenceLength();
+
+        for (int i = 0; i < words; i++) {
+            String word = random.nextDouble() < FUNCTION_WORD_PROBABILITY
+                    ? FUNCTION_WORDS.get(random.nextInt(FUNCTION_WORDS.size())) : nextWord();
+
+            if (sentenceLength == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            document.append(word);
+            sentenceLength++;
+
+            if (sentenceLength == nextSentenceLength) {
+                document.append(PERIOD);
+                sentenceLength = 0;
+                nextSentenceLength = nextSentenceLength();
+            }
+            document.append(SPACE);
+        }
+
+        return document.toString().trim();
+    }
+
+    public List<String> documents(int count, int words) {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(document(words));
+        }
+        return documents;
+    }
+
+    public String query(int terms) {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < terms; i++) {
+            words.add(nextWord());
+        }
+        return String.join(SPACE, words);
+    }
+
+    private int nextSentenceLength() {
+        return MIN_SENTENCE_LENGTH + random.nextInt(MAX_SENTENCE_LENGTH - MIN_SENTENCE_LENGTH + 1);
+    }
+
+}
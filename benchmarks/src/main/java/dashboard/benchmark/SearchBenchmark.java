@@ -0,0 +1,75 @@
+package dashboard.benchmark;
+
+import dashboard.core.Indexer;
+import dashboard.core.Searcher;
+import dashboard.resource.SearchRequest;
+import dashboard.resource.SearchResult;
+import dashboard.service.HighlighterService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end query latency over an indexed synthetic corpus: parsing, segment parallel search and highlighting of
+ * the first page, for queries of one to ten terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int DOCUMENTS = 2000;
+    private static final int WORDS = 500;
+    private static final int QUERIES = 64;
+    private static final int PAGE_SIZE = 10;
+    private static final long SEED = 42;
+
+    @Param({"1", "2", "5", "10"})
+    public int terms;
+
+    private BenchmarkContext context;
+    private Searcher searcher;
+    private List<SearchRequest> searchRequests;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        RomanianCorpus corpus = new RomanianCorpus(SEED);
+
+        context = new BenchmarkContext();
+        context.writeDocuments(corpus.documents(DOCUMENTS, WORDS));
+        searcher = context.start(Indexer.class, HighlighterService.class, Searcher.class).getBean(Searcher.class);
+
+        searchRequests = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            searchRequests.add(new SearchRequest(corpus.query(terms), PAGE_SIZE, null, false));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return searcher.search(searchRequests.get(next++ % QUERIES));
+    }
+
+}
@@ -0,0 +1,70 @@
+package dashboard.benchmark;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analysis throughput of the Romanian chain with and without the shared stem cache, single threaded and with the
+ * cache contended by several threads. One operation analyzes {@link #DOCUMENTS} documents of {@link #WORDS} words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StemCacheBenchmark {
+    private static final int DOCUMENTS = 20;
+    private static final int WORDS = 1000;
+    private static final long SEED = 42;
+
+    @Param({"0", "200000"})
+    public int stemCacheEntries;
+
+    private Analyzer analyzer;
+    private List<String> documents;
+
+    @Setup
+    public void setUp() throws IOException {
+        analyzer = BenchmarkSupport.createAnalyzer(stemCacheEntries);
+        documents = new RomanianCorpus(SEED).documents(DOCUMENTS, WORDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+    @Benchmark
+    public void analyze(Blackhole blackhole) throws IOException {
+        for (String document : documents) {
+            BenchmarkSupport.consumeTokens(analyzer, document, blackhole);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void analyzeConcurrently(Blackhole blackhole) throws IOException {
+        for (String document : documents) {
+            BenchmarkSupport.consumeTokens(analyzer, document, blackhole);
+        }
+    }
+
+}
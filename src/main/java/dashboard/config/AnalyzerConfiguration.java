@@ -0,0 +1,66 @@
+package dashboard.config;
+
+import dashboard.core.analyzer.RomanianAnalyzerWithASCIIFolding;
+import dashboard.core.analyzer.StemCache;
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.CharArraySet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ResourceUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Exposes the single analyzer shared by indexing, searching and highlighting. The stopwords are read once, from the
+ * classpath when {@code stopwords.path} starts with {@code classpath:} and from the filesystem otherwise.
+ */
+@Configuration
+public class AnalyzerConfiguration {
+    private static final Logger LOGGER = Logger.getLogger(AnalyzerConfiguration.class);
+    private static final String DEFAULT_STOPWORDS = "stopwords.txt";
+    private static final String MISSING_STOPWORDS = "Stopwords file %s not found, falling back to classpath:%s";
+    private static final String STOPWORDS_LOADED = "Loaded %d stopwords from %s";
+
+    @Value("${stopwords.path:classpath:stopwords.txt}")
+    private String stopwordsPath;
+
+    @Value("${analyzer.stem.cache.max.entries:200000}")
+    private int stemCacheMaxEntries;
+
+    @Bean
+    public StemCache stemCache() {
+        return new StemCache(stemCacheMaxEntries);
+    }
+
+    @Bean
+    public RomanianAnalyzerWithASCIIFolding romanianAnalyzer(StemCache stemCache) throws IOException {
+        Resource stopwordsResource = resolveStopwords();
+
+        try (InputStream inputStream = stopwordsResource.getInputStream()) {
+            CharArraySet stopwords = RomanianAnalyzerWithASCIIFolding.loadStopwords(inputStream);
+            LOGGER.info(String.format(STOPWORDS_LOADED, stopwords.size(), stopwordsResource.getDescription()));
+            return new RomanianAnalyzerWithASCIIFolding(stopwords, stemCache);
+        }
+    }
+
+    private Resource resolveStopwords() {
+        if (stopwordsPath.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) {
+            return new ClassPathResource(stopwordsPath.substring(ResourceUtils.CLASSPATH_URL_PREFIX.length()));
+        }
+
+        File stopwordsFile = new File(stopwordsPath);
+        if (stopwordsFile.isFile()) {
+            return new FileSystemResource(stopwordsFile);
+        }
+
+        LOGGER.warn(String.format(MISSING_STOPWORDS, stopwordsPath, DEFAULT_STOPWORDS));
+        return new ClassPathResource(DEFAULT_STOPWORDS);
+    }
+
+}
@@ -0,0 +1,33 @@
+package dashboard.config;
+
+import dashboard.service.AsyncSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Hands Spring MVC's own async work (streaming response bodies) to the bounded search pool instead of the default
+ * executor, which starts a new thread per request, and applies the async request timeout. With async search disabled
+ * there is no pool, and Spring's default executor is kept.
+ */
+@Configuration
+public class AsyncWebConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private AsyncSearchService asyncSearchService;
+
+    @Value("${search.async.timeout.ms:30000}")
+    private long timeoutMillis;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (asyncSearchService.isEnabled()) {
+            configurer.setTaskExecutor(new ConcurrentTaskExecutor(asyncSearchService.getExecutor()));
+        }
+        configurer.setDefaultTimeout(timeoutMillis);
+    }
+
+}
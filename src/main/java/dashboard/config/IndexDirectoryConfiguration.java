@@ -0,0 +1,297 @@
+package dashboard.config;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the directory holding the index. {@code index.directory.store} picks the implementation: {@code mmap},
+ * {@code niofs}, {@code ram} for small indexes kept on the heap, or {@code auto} to let Lucene decide.
+ * <p>
+ * A {@code ram} index starts from the copy on disk and is written back on shutdown, once the indexer's last commit is
+ * done. The new files are added next to the old ones, which are only removed once the new commit is in place, so
+ * the disk always holds a complete index. If the process dies instead of shutting down, everything indexed since
+ * startup, watched changes included, is lost.
+ * <p>
+ * {@code index.directory.preload.extensions} lists the hot index files read into the page cache before the index is
+ * opened, so the first queries do not fault them in from disk, e.g. {@code tim,tip} for the terms dictionary,
+ * {@code nvd,nvm} for norms and {@code dvd,dvm} for doc values. Small segments are packed in {@code cfs} compound
+ * files, which can only be warmed whole. With a memory mapped store, {@code *} preloads every mapped file instead.
+ */
+@Configuration
+public class IndexDirectoryConfiguration {
+    private static final Logger LOGGER = Logger.getLogger(IndexDirectoryConfiguration.class);
+    private static final String MMAP = "mmap";
+    private static final String NIOFS = "niofs";
+    private static final String RAM = "ram";
+    private static final String AUTO = "auto";
+    private static final String ALL_FILES = "*";
+    private static final String EXTENSION_SEPARATOR = ".";
+    private static final int WARM_BUFFER_BYTES = 1 << 20;
+    private static final String UNKNOWN_STORE = "Unknown index store %s, letting Lucene choose.";
+    private static final String DIRECTORY_OPENED = "Opened index at %s as %s: %d files, %d bytes.";
+    private static final String MMAP_DETAILS = "Index files are memory mapped, preload of every file %s.";
+    private static final String UNMAP_NOT_SUPPORTED = "Mapped index files cannot be unmapped early: %s";
+    private static final String RAM_DETAILS = "Index held on the heap, written back to %s on shutdown.";
+    private static final String RAM_WRITTEN_BACK = "Wrote the in-memory index back to %s: %d files, %d bytes.";
+    private static final String STAGING_SUFFIX = ".staging";
+    private static final String SEGMENTS_PREFIX = "segments";
+    private static final String WRITE_BACK_CONFLICT =
+            "Index file %s differs from the in-memory one, left the index on disk untouched and the new one in %s.";
+    private static final String FILES_WARMED = "Warmed %d hot index files, %d bytes, in %d ms.";
+    private static final String WARM_ERROR = "Could not warm index file %s: %s";
+
+    @Value("${index.directory.path}")
+    private String indexDirectoryPath;
+
+    @Value("${index.directory.store:auto}")
+    private String store;
+
+    @Value("${index.directory.preload.extensions:}")
+    private String[] preloadExtensions;
+
+    private Directory directory;
+
+    /**
+     * Closed by {@link #closeIndexDirectory()} rather than by Spring, so a {@code ram} index can still be copied to
+     * disk first.
+     */
+    @Bean(destroyMethod = "")
+    public Directory indexDirectory() throws IOException {
+        Path path = Paths.get(indexDirectoryPath);
+        if (!RAM.equalsIgnoreCase(store.trim())) {
+            Files.createDirectories(path);
+        }
+        Directory directory = openDirectory(path);
+
+        if (directory instanceof MMapDirectory) {
+            MMapDirectory mMapDirectory = (MMapDirectory) directory;
+            mMapDirectory.setPreload(isPreloadingAllFiles());
+            LOGGER.info(String.format(MMAP_DETAILS, mMapDirectory.getPreload() ? "enabled" : "disabled"));
+            if (!MMapDirectory.UNMAP_SUPPORTED) {
+                LOGGER.warn(String.format(UNMAP_NOT_SUPPORTED, MMapDirectory.UNMAP_NOT_SUPPORTED_REASON));
+            }
+        } else if (directory instanceof RAMDirectory) {
+            LOGGER.info(String.format(RAM_DETAILS, path));
+        }
+        if (directory instanceof FSDirectory && !isPreloadingAllFiles()) {
+            warmHotFiles(((FSDirectory) directory).getDirectory());
+        }
+
+        reportDirectory(path, directory);
+        this.directory = directory;
+        return directory;
+    }
+
+    /**
+     * Runs after the indexer, which depends on the directory, has committed and closed its writer.
+     */
+    @PreDestroy
+    private void closeIndexDirectory() throws IOException {
+        if (Objects.isNull(directory)) {
+            return;
+        }
+        try {
+            if (directory instanceof RAMDirectory) {
+                writeBack((RAMDirectory) directory, Paths.get(indexDirectoryPath));
+            }
+        } finally {
+            directory.close();
+        }
+    }
+
+    /**
+     * Copies every file to a staging directory next to the index and syncs it, then moves the new files in next to
+     * the old ones, the segments files last, and only then deletes the files the new commit no longer uses. Until the
+     * new segments file lands the old commit is intact and is the one Lucene opens, so a crash at any point leaves a
+     * complete index on disk. Index files are written once and never change, so a file the disk already holds under
+     * the same name is the same file and is kept as it is.
+     */
+    private void writeBack(RAMDirectory ramDirectory, Path path) throws IOException {
+        Path staging = path.resolveSibling(path.getFileName() + STAGING_SUFFIX);
+        deleteFiles(staging);
+        Files.createDirectories(staging);
+        Files.createDirectories(path);
+
+        String[] files = ramDirectory.listAll();
+        try (FSDirectory stagingDirectory = FSDirectory.open(staging)) {
+            for (String file : files) {
+                stagingDirectory.copyFrom(ramDirectory, file, file, IOContext.DEFAULT);
+            }
+            stagingDirectory.sync(Arrays.asList(files));
+        }
+
+        Set<String> newFiles = new HashSet<>(Arrays.asList(files));
+        Set<String> oldFiles = listFileNames(path);
+        for (String file : files) {
+            if (oldFiles.contains(file) && Files.size(path.resolve(file)) != ramDirectory.fileLength(file)) {
+                throw new IOException(String.format(WRITE_BACK_CONFLICT, path.resolve(file), staging));
+            }
+        }
+
+        List<String> segmentsFiles = new ArrayList<>();
+        for (String file : files) {
+            if (file.startsWith(SEGMENTS_PREFIX)) {
+                segmentsFiles.add(file);
+            } else {
+                moveIfMissing(staging, path, file, oldFiles);
+            }
+        }
+        IOUtils.fsync(path, true);
+        for (String file : segmentsFiles) {
+            moveIfMissing(staging, path, file, oldFiles);
+        }
+        IOUtils.fsync(path, true);
+
+        for (String file : oldFiles) {
+            if (!newFiles.contains(file) && !IndexWriter.WRITE_LOCK_NAME.equals(file)) {
+                Files.delete(path.resolve(file));
+            }
+        }
+        deleteFiles(staging);
+        Files.delete(staging);
+
+        LOGGER.info(String.format(RAM_WRITTEN_BACK, path, files.length, ramDirectory.ramBytesUsed()));
+    }
+
+    private void moveIfMissing(Path staging, Path path, String file, Set<String> oldFiles) throws IOException {
+        if (!oldFiles.contains(file)) {
+            Files.move(staging.resolve(file), path.resolve(file), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private Set<String> listFileNames(Path directoryPath) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directoryPath)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    private void deleteFiles(Path directoryPath) throws IOException {
+        if (!Files.isDirectory(directoryPath)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directoryPath)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Directory openDirectory(Path path) throws IOException {
+        switch (store.trim().toLowerCase()) {
+            case MMAP:
+                return new MMapDirectory(path);
+            case NIOFS:
+                return new NIOFSDirectory(path);
+            case RAM:
+                return openRamDirectory(path);
+            case AUTO:
+                return FSDirectory.open(path);
+            default:
+                LOGGER.warn(String.format(UNKNOWN_STORE, store));
+                return FSDirectory.open(path);
+        }
+    }
+
+    /**
+     * Starts from a copy of the index on disk when there is one. The disk copy is left as it is, so the next start
+     * reindexes whatever changed since it was written.
+     */
+    private Directory openRamDirectory(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return new RAMDirectory();
+        }
+        try (FSDirectory fsDirectory = FSDirectory.open(path)) {
+            return new RAMDirectory(fsDirectory, IOContext.READONCE);
+        }
+    }
+
+    private boolean isPreloadingAllFiles() {
+        return Arrays.asList(preloadExtensions).contains(ALL_FILES);
+    }
+
+    /**
+     * Reads the hot files once, sequentially, so their pages are already cached when the searcher maps or reads them.
+     */
+    private void warmHotFiles(Path path) throws IOException {
+        Set<String> extensions = new HashSet<>(Arrays.asList(preloadExtensions));
+        if (extensions.isEmpty() || !Files.isDirectory(path)) {
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        int warmedFiles = 0;
+        long warmedBytes = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WARM_BUFFER_BYTES);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String extension = name.substring(name.lastIndexOf(EXTENSION_SEPARATOR) + 1);
+                if (extensions.contains(extension)) {
+                    warmedBytes += warmFile(file, buffer);
+                    warmedFiles++;
+                }
+            }
+        }
+
+        LOGGER.info(String.format(FILES_WARMED, warmedFiles, warmedBytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+    }
+
+    private long warmFile(Path file, ByteBuffer buffer) {
+        long bytes = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(buffer)) > 0) {
+                bytes += read;
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format(WARM_ERROR, file, e));
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    private void reportDirectory(Path path, Directory directory) throws IOException {
+        String[] files = directory.listAll();
+        long bytes = 0;
+        for (String file : files) {
+            bytes += directory.fileLength(file);
+        }
+        LOGGER.info(String.format(DIRECTORY_OPENED, path, directory.getClass().getSimpleName(), files.length, bytes));
+    }
+
+}
@@ -0,0 +1,44 @@
+package dashboard.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dashboard.core.SearchResultStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Writes every part of a search result as one JSON object per line and flushes it right away, so clients can render
+ * hits while the rest are still being highlighted.
+ */
+public class NdjsonSearchResultStream implements SearchResultStream {
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+    private static final String SEARCH_DETAILS = "searchDetails";
+    private static final byte END_OF_LINE = '\n';
+
+    private final OutputStream outputStream;
+    private final ObjectMapper objectMapper;
+
+    public NdjsonSearchResultStream(OutputStream outputStream, ObjectMapper objectMapper) {
+        this.outputStream = outputStream;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void writeSearchDetails(Map<String, String> searchDetails) throws IOException {
+        writeLine(Collections.singletonMap(SEARCH_DETAILS, searchDetails));
+    }
+
+    @Override
+    public void writeHit(Map<String, String> documentDetails) throws IOException {
+        writeLine(documentDetails);
+    }
+
+    private synchronized void writeLine(Object record) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(record));
+        outputStream.write(END_OF_LINE);
+        outputStream.flush();
+    }
+
+}
@@ -1,14 +1,27 @@
 package dashboard.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dashboard.core.Searcher;
+import dashboard.resource.SearchRequest;
 import dashboard.resource.SearchResult;
+import dashboard.service.AsyncSearchService;
+import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by Ionut Emanuel Mihailescu on 3/19/18.
@@ -16,13 +29,63 @@ import org.springframework.web.bind.annotation.RequestParam;
 @Controller
 @RequestMapping(value = "/api/search")
 public class SearchController {
+    private static final Logger LOGGER = Logger.getLogger(SearchController.class);
+    private static final String REQUEST_FAILED = "Search request failed due to %s .";
 
     @Autowired
     private Searcher searcher;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AsyncSearchService asyncSearchService;
+
     @RequestMapping(value = "/singleQuery", method = RequestMethod.GET)
-    public ResponseEntity<SearchResult> searchForQuery(@RequestParam String query) {
-        return new ResponseEntity<>(searcher.search(query), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<SearchResult>> searchForQuery(
+            @RequestParam String query,
+            @RequestParam(required = false) Integer pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean explain) {
+        SearchRequest searchRequest = new SearchRequest(query, pageSize, cursor, explain);
+        return asyncSearchService.submit(() -> searcher.search(searchRequest)).handle(this::buildResponse);
+    }
+
+    @RequestMapping(value = "/stream", method = RequestMethod.GET, produces = NdjsonSearchResultStream.CONTENT_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamSearchForQuery(@RequestParam String query,
+                                                                      @RequestParam(required = false) Integer pageSize,
+                                                                      @RequestParam(required = false) String cursor) {
+        SearchRequest searchRequest = new SearchRequest(query, pageSize, cursor, false);
+        StreamingResponseBody responseBody = outputStream -> searcher.searchStreaming(searchRequest,
+                new NdjsonSearchResultStream(outputStream, objectMapper));
+        return new ResponseEntity<>(responseBody, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/batch", method = RequestMethod.POST)
+    public CompletableFuture<ResponseEntity<List<SearchResult>>> searchForQueries(
+            @RequestBody List<SearchRequest> searchRequests) {
+        return asyncSearchService.submit(() -> searcher.searchBatch(searchRequests)).handle(this::buildResponse);
+    }
+
+    /**
+     * Streaming bodies are handed to the search pool by Spring itself, which reports a full pool by throwing.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> handleRejection(RejectedExecutionException e) {
+        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private <T> ResponseEntity<T> buildResponse(T body, Throwable failure) {
+        if (Objects.isNull(failure)) {
+            return new ResponseEntity<>(body, HttpStatus.OK);
+        }
+
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        if (cause instanceof RejectedExecutionException) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        LOGGER.error(String.format(REQUEST_FAILED, cause));
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
 }
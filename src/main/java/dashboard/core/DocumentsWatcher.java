@@ -0,0 +1,241 @@
+package dashboard.core;
+
+import dashboard.utils.NamedThreadFactory;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the documents tree and feeds created, modified and deleted files into the index while the application runs.
+ * Events are collected until the tree has been quiet for the debounce interval (or the batch grows too large or too
+ * old) and are then applied as one batch, ended by a single commit unless the indexer commits in the background.
+ */
+@Component
+@DependsOn("indexer")
+public class DocumentsWatcher implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(DocumentsWatcher.class);
+    private static final String WATCHER_DISABLED = "Documents watcher is disabled.";
+    private static final String WATCHER_STARTED = "Watching %d directories under %s for changes.";
+    private static final String MISSING_DIRECTORY = "Documents directory %s does not exist, nothing to watch.";
+    private static final String BATCH_COMMITTED = "Applied watched changes: %d files updated, %d removed in %d ms.";
+    private static final String OVERFLOW_DETECTED = "Watch events were lost, synchronizing the whole documents tree.";
+    private static final String WATCHER_ERROR = "Error while applying watched changes: %s";
+    private static final String CHANGE_ERROR = "Error while applying the watched change to %s, dropping it: %s";
+    private static final String CATCHING_UP = "Catching up with changes made while the index was being built.";
+    private static final String WATCHER_THREAD_NAME = "documents-watcher";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    @Autowired
+    private Indexer indexer;
+
+    @Value("${watcher.enabled:true}")
+    private boolean enabled;
+
+    @Value("${watcher.debounce.ms:500}")
+    private long debounceMillis;
+
+    @Value("${watcher.max.delay.ms:5000}")
+    private long maxDelayMillis;
+
+    @Value("${watcher.max.batch.size:500}")
+    private int maxBatchSize;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Set<Path> pendingChanges = new LinkedHashSet<>();
+    private long firstPendingAt;
+    private boolean overflow;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    private void startWatching() throws IOException {
+        if (!enabled) {
+            LOGGER.info(WATCHER_DISABLED);
+            return;
+        }
+
+        Path root = Paths.get(indexer.getDocumentsDirectoryPath());
+        if (!Files.isDirectory(root)) {
+            LOGGER.error(String.format(MISSING_DIRECTORY, root));
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        registerRecursively(root);
+        LOGGER.info(String.format(WATCHER_STARTED, watchedDirectories.size(), root));
+
+        running = true;
+        watcherThread = new NamedThreadFactory(WATCHER_THREAD_NAME).newThread(this::watch);
+        watcherThread.start();
+    }
+
+    private void registerRecursively(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                // files copied into a new directory before it was registered never produce events of their own
+                if (running) {
+                    addPendingChange(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Directories are registered only once the indexer's startup build is done, so the tree is synchronized once
+     * more first, picking up whatever changed while the build ran.
+     */
+    private void watch() {
+        catchUp();
+        while (running) {
+            try {
+                WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (Objects.nonNull(key)) {
+                    collectEvents(key);
+                }
+                if (shouldFlush(Objects.isNull(key))) {
+                    flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error(String.format(WATCHER_ERROR, e));
+            }
+        }
+    }
+
+    private void catchUp() {
+        LOGGER.info(CATCHING_UP);
+        try {
+            indexer.synchronizeIndex();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error(String.format(WATCHER_ERROR, e));
+        }
+    }
+
+    private void collectEvents(WatchKey key) throws IOException {
+        Path directory = watchedDirectories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+            } else if (Objects.nonNull(directory)) {
+                Path path = directory.resolve((Path) event.context());
+
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                    registerRecursively(path);
+                } else {
+                    addPendingChange(path);
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private void addPendingChange(Path path) {
+        if (pendingChanges.isEmpty()) {
+            firstPendingAt = System.currentTimeMillis();
+        }
+        pendingChanges.add(path);
+    }
+
+    private boolean shouldFlush(boolean quiet) {
+        if (overflow) {
+            return true;
+        }
+        return !pendingChanges.isEmpty() && (quiet || pendingChanges.size() >= maxBatchSize
+                || System.currentTimeMillis() - firstPendingAt >= maxDelayMillis);
+    }
+
+    private void flush() throws IOException {
+        long start = System.currentTimeMillis();
+
+        if (overflow) {
+            LOGGER.warn(OVERFLOW_DETECTED);
+            overflow = false;
+            pendingChanges.clear();
+            indexer.synchronizeIndex();
+            return;
+        }
+
+        int updated = 0;
+        int removed = 0;
+        try {
+            for (Path path : pendingChanges) {
+                File file = path.toFile();
+                try {
+                    if (file.isFile()) {
+                        indexer.indexFile(file);
+                        updated++;
+                    } else if (!file.exists()) {
+                        indexer.removeFile(file);
+                        removed++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.error(String.format(CHANGE_ERROR, path, e));
+                }
+            }
+        } finally {
+            pendingChanges.clear();
+        }
+        indexer.commitBatch();
+
+        LOGGER.info(String.format(BATCH_COMMITTED, updated, removed, System.currentTimeMillis() - start));
+    }
+
+    @PreDestroy
+    @Override
+    public void close() throws Exception {
+        if (Objects.isNull(watchService)) {
+            return;
+        }
+        running = false;
+        watchService.close();
+        watcherThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
+}
@@ -1,21 +1,38 @@
 package dashboard.core;
 
 
-import dashboard.core.analyzer.RomanianAnalyzerWithASCIIFolding;
+import dashboard.core.analyzer.StemCache;
+import dashboard.core.ingestion.BackgroundCommitter;
+import dashboard.core.ingestion.ContentExtractor;
+import dashboard.core.ingestion.ExtractionCache;
+import dashboard.core.ingestion.IndexedFiles;
+import dashboard.core.ingestion.IngestionPipeline;
 import dashboard.utils.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.tika.Tika;
-import org.apache.tika.exception.TikaException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -24,7 +41,11 @@ import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Ionut Emanuel Mihailescu on 3/19/18.
@@ -39,31 +60,283 @@ public class Indexer implements AutoCloseable {
     private static final String EMPTY_DIRECTORY_ERROR =
             "Empty directory, nothing to index. Please, provide another directory.";
     private static final String INDEX_BUILD_SUCCESS = "Index build successfully. %d documents were been added.";
-    private static final String PARSING_ERROR = "Error while parsing the file %s";
-    private IndexWriter indexWriter;
+    private static final String PARSING_ERROR = "Error while parsing the file %s: %s";
+    private static final String EXTRACTION_TRUNCATED = "Content of %s truncated to its first %d characters.";
+    private static final String EXTRACTION_TIMED_OUT = "Parsing %s took longer than %d ms, indexed without content.";
+    private static final String INCREMENTAL_SUMMARY =
+            "Incremental indexing: %d files already indexed, %d removed from disk.";
+    private static final String REMOVING_FILE_FROM_INDEX = "Removing file %s from index.";
+    private static final String STEM_CACHE_STATS = "Stem cache holds %d terms, hit ratio %.2f (%d hits, %d misses).";
+    private static final String EXTRACTION_CACHE_STATS = "Extraction cache served %d files, %d were parsed.";
+    private static final String EXTRACTION_CACHE_GC_ERROR = "Could not collect extraction cache garbage: %s";
+    private static final String WRITER_SETTINGS =
+            "Index writer: %.0f MB RAM buffer, %s merge policy, %s merge threads, %s commits%s.";
+    private static final String PERIODIC_COMMITS = " every %d ms or %d changes";
+    private static final String UNKNOWN_MERGE_POLICY = "Unknown merge policy %s, using tiered.";
+    private static final String UNKNOWN_COMMIT_MODE = "Unknown commit mode %s, committing every batch.";
+    private static final String BULK_LOAD_UNCHANGED = "Bulk load found no changes, left the index unmerged.";
+    private static final String BULK_LOAD_MERGED = "Bulk load finished, merged the index down to %d segments in %d ms.";
+    private static final String TIERED_MERGE_POLICY = "tiered";
+    private static final String LOG_MERGE_POLICY = "log";
+    private static final String NO_MERGE_POLICY = "none";
+    private static final String BATCH_COMMIT_MODE = "batch";
+    private static final String PERIODIC_COMMIT_MODE = "periodic";
+    private static final int MERGE_BACKLOG = 5;
+    private static final String DOCUMENTS_INDEXED_METRIC = "indexer.documents.indexed";
+    private static final String DOCUMENTS_REMOVED_METRIC = "indexer.documents.removed";
+    private static final String PARSE_METRIC = "indexer.parse";
+    private static final String PARSE_FAILURES_METRIC = "indexer.parse.failures";
+    private static final String COMMIT_METRIC = "indexer.commit";
+    private static final String STEM_CACHE_HITS_METRIC = "analyzer.stem.cache.hits";
+    private static final String STEM_CACHE_MISSES_METRIC = "analyzer.stem.cache.misses";
+    private static final String STEM_CACHE_SIZE_METRIC = "analyzer.stem.cache.size";
+    private static final String STEM_CACHE_HIT_RATIO_METRIC = "analyzer.stem.cache.hit.ratio";
+    private static final String EXTRACTION_TRUNCATED_METRIC = "indexer.extraction.truncated";
+    private static final String EXTRACTION_TIMEOUTS_METRIC = "indexer.extraction.timeouts";
+    private static final String EXTRACTION_ACTIVE_METRIC = "indexer.extraction.active";
+    private static final String EXTRACTION_ABANDONED_METRIC = "indexer.extraction.abandoned";
+    private static final String INDEX_DOCUMENTS_METRIC = "index.documents";
+    private static final String RAM_BUFFER_METRIC = "index.ram.buffer.bytes";
+    private static final String MIME_TYPE_TAG = "mimeType";
+    private volatile IndexWriter indexWriter;
+    private ContentExtractor contentExtractor;
+    private ExtractionCache extractionCache;
+    private BackgroundCommitter backgroundCommitter;
+    private Timer commitTimer;
+    private boolean periodicCommits;
+    private final Map<String, Timer> parseTimers = new ConcurrentHashMap<>();
 
-    @Value("${index.directory.path}")
-    private String indexDirectoryPath;
+    @Autowired
+    private Analyzer analyzer;
+
+    @Autowired
+    private StemCache stemCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter documentsIndexed;
+
+    private Counter documentsRemoved;
+
+    @Autowired
+    private Directory indexDirectory;
 
     @Value("${documents.directory.path}")
     private String documentsDirectoryPath;
 
+    @Value("${indexer.extraction.workers:0}")
+    private int extractionWorkers;
+
+    @Value("${indexer.writer.workers:0}")
+    private int writerWorkers;
+
+    @Value("${indexer.queue.capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${indexer.incremental:true}")
+    private boolean incremental;
+
+    @Value("${indexer.term.vector.offsets:true}")
+    private boolean termVectorOffsets;
+
+    @Value("${indexer.extraction.max.chars:100000}")
+    private int extractionMaxChars;
+
+    @Value("${indexer.extraction.timeout.ms:60000}")
+    private long extractionTimeoutMillis;
+
+    @Value("${indexer.extraction.cache.path:}")
+    private String extractionCachePath;
+
+    @Value("${indexer.ram.buffer.mb:16}")
+    private double ramBufferMb;
+
+    @Value("${indexer.merge.policy:tiered}")
+    private String mergePolicy;
+
+    @Value("${indexer.merge.factor:10}")
+    private int mergeFactor;
+
+    @Value("${indexer.merge.max.segment.mb:5120}")
+    private double maxMergedSegmentMb;
+
+    @Value("${indexer.merge.threads:0}")
+    private int mergeThreads;
+
+    @Value("${indexer.commit.mode:batch}")
+    private String commitMode;
+
+    @Value("${indexer.commit.interval.ms:60000}")
+    private long commitIntervalMillis;
+
+    @Value("${indexer.commit.max.changes:10000}")
+    private long commitMaxChanges;
+
+    @Value("${indexer.bulk.load:false}")
+    private boolean bulkLoad;
+
+    @Value("${indexer.bulk.load.max.segments:1}")
+    private int bulkLoadMaxSegments;
+
+    /**
+     * With the bulk load profile, the initial build runs without merging and without background commits, and the
+     * writer is then reopened with the configured merge policy. The index is merged down once at that point, unless
+     * the build neither added nor removed a document, as when an incremental startup finds nothing changed.
+     */
     @PostConstruct
     private void createIndexWriter() throws IOException {
-        Directory indexDirectory = FSDirectory.open(Paths.get(indexDirectoryPath));
-        RomanianAnalyzerWithASCIIFolding romanianAnalyzer = new RomanianAnalyzerWithASCIIFolding();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(romanianAnalyzer);
-        indexWriter = new IndexWriter(indexDirectory, indexWriterConfig);
-        buildIndex(documentsDirectoryPath);
-        indexWriter.commit();
+        periodicCommits = isPeriodicCommitMode();
+        indexWriter = new IndexWriter(indexDirectory, createIndexWriterConfig(incremental
+                ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND : IndexWriterConfig.OpenMode.CREATE, bulkLoad));
+        contentExtractor = new ContentExtractor(extractionMaxChars, extractionTimeoutMillis, getExtractionWorkers());
+        extractionCache = extractionCachePath.trim().isEmpty() ? ExtractionCache.disabled()
+                : ExtractionCache.open(Paths.get(extractionCachePath));
+        backgroundCommitter = createBackgroundCommitter();
+        registerMetrics();
+
+        if (bulkLoad) {
+            double changesBefore = countChanges();
+            buildIndex(documentsDirectoryPath, incremental);
+            commit();
+            finishBulkLoad(countChanges() > changesBefore);
+            backgroundCommitter.start();
+        } else {
+            backgroundCommitter.start();
+            buildIndex(documentsDirectoryPath, incremental);
+            commit();
+        }
+    }
+
+    private IndexWriterConfig createIndexWriterConfig(IndexWriterConfig.OpenMode openMode, boolean deferMerges) {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
+        indexWriterConfig.setOpenMode(openMode);
+        indexWriterConfig.setRAMBufferSizeMB(ramBufferMb);
+        indexWriterConfig.setMergePolicy(deferMerges ? NoMergePolicy.INSTANCE : createMergePolicy());
+
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        if (mergeThreads > 0) {
+            mergeScheduler.setMaxMergesAndThreads(mergeThreads + MERGE_BACKLOG, mergeThreads);
+        }
+        indexWriterConfig.setMergeScheduler(mergeScheduler);
+
+        LOGGER.info(String.format(WRITER_SETTINGS, ramBufferMb,
+                deferMerges ? NO_MERGE_POLICY : mergePolicy.trim().toLowerCase(),
+                mergeThreads > 0 ? String.valueOf(mergeThreads) : "auto",
+                periodicCommits ? PERIODIC_COMMIT_MODE : BATCH_COMMIT_MODE,
+                periodicCommits ? String.format(PERIODIC_COMMITS, commitIntervalMillis, commitMaxChanges)
+                        : EMPTY_STRING));
+        return indexWriterConfig;
+    }
+
+    /**
+     * {@code indexer.merge.factor} is the number of segments per tier for the tiered policy and the merge factor for
+     * the log policy; {@code none} never merges.
+     */
+    private MergePolicy createMergePolicy() {
+        switch (mergePolicy.trim().toLowerCase()) {
+            case NO_MERGE_POLICY:
+                return NoMergePolicy.INSTANCE;
+            case LOG_MERGE_POLICY:
+                LogByteSizeMergePolicy logMergePolicy = new LogByteSizeMergePolicy();
+                logMergePolicy.setMergeFactor(mergeFactor);
+                logMergePolicy.setMaxMergeMB(maxMergedSegmentMb);
+                return logMergePolicy;
+            case TIERED_MERGE_POLICY:
+                break;
+            default:
+                LOGGER.warn(String.format(UNKNOWN_MERGE_POLICY, mergePolicy));
+                break;
+        }
+        TieredMergePolicy tieredMergePolicy = new TieredMergePolicy();
+        tieredMergePolicy.setSegmentsPerTier(mergeFactor);
+        tieredMergePolicy.setMaxMergeAtOnce(mergeFactor);
+        tieredMergePolicy.setMaxMergedSegmentMB(maxMergedSegmentMb);
+        return tieredMergePolicy;
     }
 
-    private Document buildDocument(File file) {
+    /**
+     * Only the periodic commit mode commits in the background; in batch mode the committer never fires.
+     */
+    private BackgroundCommitter createBackgroundCommitter() {
+        if (periodicCommits) {
+            return new BackgroundCommitter(this::commit, commitIntervalMillis, commitMaxChanges);
+        }
+        return new BackgroundCommitter(this::commit, 0, 0);
+    }
+
+    private boolean isPeriodicCommitMode() {
+        String mode = commitMode.trim().toLowerCase();
+        if (!PERIODIC_COMMIT_MODE.equals(mode) && !BATCH_COMMIT_MODE.equals(mode)) {
+            LOGGER.warn(String.format(UNKNOWN_COMMIT_MODE, commitMode));
+        }
+        return PERIODIC_COMMIT_MODE.equals(mode);
+    }
+
+    /**
+     * Closing the writer waits for pending flushes; merges were never scheduled by the bulk writer.
+     */
+    private void finishBulkLoad(boolean changed) throws IOException {
+        long startedAt = System.nanoTime();
+        indexWriter.close();
+        indexWriter = new IndexWriter(indexDirectory, createIndexWriterConfig(IndexWriterConfig.OpenMode.APPEND,
+                false));
+        if (!changed) {
+            LOGGER.info(BULK_LOAD_UNCHANGED);
+            return;
+        }
+        indexWriter.forceMerge(bulkLoadMaxSegments);
+        commit();
+        LOGGER.info(String.format(BULK_LOAD_MERGED, bulkLoadMaxSegments,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+    }
+
+    private double countChanges() {
+        return documentsIndexed.count() + documentsRemoved.count();
+    }
+
+    private void registerMetrics() {
+        documentsIndexed = Counter.builder(DOCUMENTS_INDEXED_METRIC).description("Documents added or replaced")
+                .register(meterRegistry);
+        documentsRemoved = Counter.builder(DOCUMENTS_REMOVED_METRIC).description("Documents removed")
+                .register(meterRegistry);
+        commitTimer = Timer.builder(COMMIT_METRIC).description("Index commit time").register(meterRegistry);
+        Gauge.builder(INDEX_DOCUMENTS_METRIC, this, indexer -> indexer.indexWriter.numDocs())
+                .description("Live documents in the index, uncommitted changes included").register(meterRegistry);
+        Gauge.builder(RAM_BUFFER_METRIC, this, indexer -> indexer.indexWriter.ramBytesUsed())
+                .description("Memory used by buffered, not yet flushed, changes").register(meterRegistry);
+        Gauge.builder(EXTRACTION_ACTIVE_METRIC, contentExtractor, ContentExtractor::getActive)
+                .description("Extractions running on a Tika worker").register(meterRegistry);
+        Gauge.builder(EXTRACTION_ABANDONED_METRIC, contentExtractor, ContentExtractor::getAbandoned)
+                .description("Timed out extractions still holding a Tika worker").register(meterRegistry);
+        registerStemCacheMetrics();
+    }
+
+    /**
+     * The stem cache is shared by every analysis, so these cover indexing, watched changes and highlighting alike.
+     */
+    private void registerStemCacheMetrics() {
+        FunctionCounter.builder(STEM_CACHE_HITS_METRIC, stemCache, StemCache::getHits)
+                .description("Stems served from the stem cache").register(meterRegistry);
+        FunctionCounter.builder(STEM_CACHE_MISSES_METRIC, stemCache, StemCache::getMisses)
+                .description("Terms stemmed because they were not in the stem cache").register(meterRegistry);
+        Gauge.builder(STEM_CACHE_SIZE_METRIC, stemCache, StemCache::size)
+                .description("Terms held by the stem cache").register(meterRegistry);
+        Gauge.builder(STEM_CACHE_HIT_RATIO_METRIC, stemCache, StemCache::getHitRatio)
+                .description("Share of stemmed terms served from the stem cache").register(meterRegistry);
+    }
+
+    /**
+     * Extracts a file into the document stored in the index, without touching the index.
+     */
+    public Document buildDocument(File file) {
         Document document = new Document();
 
         FieldType fieldType = new FieldType();
         fieldType.setStored(true);
         fieldType.setStoreTermVectors(true);
+        fieldType.setStoreTermVectorPositions(termVectorOffsets);
+        fieldType.setStoreTermVectorOffsets(termVectorOffsets);
         fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
 
         enrichDocument(file, document, fieldType);
@@ -71,47 +344,185 @@ public class Indexer implements AutoCloseable {
         return document;
     }
 
+    /**
+     * Stored fields are read back in the order they were added, so the small ones go first and loading them can stop
+     * before the content.
+     */
     private void enrichDocument(File file, Document document, FieldType fieldType) {
-        document.add(new Field(Constants.CONTENT, getContentFromFile(file), fieldType));
         document.add(new StringField(Constants.FILE_NAME, file.getName(), Field.Store.YES));
         document.add(new StringField(Constants.PATH, file.getAbsolutePath(), Field.Store.YES));
+        document.add(new StoredField(Constants.LAST_MODIFIED, file.lastModified()));
+        document.add(new StoredField(Constants.SIZE, file.length()));
+        document.add(new Field(Constants.CONTENT, getContentFromFile(file), fieldType));
     }
 
+    /**
+     * Files whose parse fails or times out are still indexed, by name and metadata, so they are not retried until
+     * they change on disk. Files whose contents were extracted before are served by the extraction cache.
+     */
     private String getContentFromFile(File file) {
-        Tika tika = new Tika();
-        String parsedFile = EMPTY_STRING;
-        try {
-            parsedFile = tika.parseToString(file);
-        } catch (TikaException | IOException e) {
-            LOGGER.error(String.format(PARSING_ERROR, e));
+        ContentExtractor.Extraction extraction = extractionCache.extract(file, extractionMaxChars, this::parseFile);
+
+        switch (extraction.getStatus()) {
+            case TRUNCATED:
+                LOGGER.warn(String.format(EXTRACTION_TRUNCATED, file.getAbsolutePath(), extractionMaxChars));
+                meterRegistry.counter(EXTRACTION_TRUNCATED_METRIC, MIME_TYPE_TAG, extraction.getMimeType())
+                        .increment();
+                break;
+            case TIMED_OUT:
+                LOGGER.warn(String.format(EXTRACTION_TIMED_OUT, file.getAbsolutePath(), extractionTimeoutMillis));
+                meterRegistry.counter(EXTRACTION_TIMEOUTS_METRIC, MIME_TYPE_TAG, extraction.getMimeType())
+                        .increment();
+                break;
+            case FAILED:
+                LOGGER.error(String.format(PARSING_ERROR, file.getAbsolutePath(), extraction.getFailure()));
+                meterRegistry.counter(PARSE_FAILURES_METRIC, MIME_TYPE_TAG, extraction.getMimeType()).increment();
+                break;
+            default:
+                break;
         }
-        return parsedFile;
+        return extraction.getText();
     }
 
-    private void addFileToIndex(File file) throws IOException {
+    private ContentExtractor.Extraction parseFile(File file) {
+        long startedAt = System.nanoTime();
+        ContentExtractor.Extraction extraction = contentExtractor.extract(file);
+        getParseTimer(extraction.getMimeType()).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return extraction;
+    }
+
+    /**
+     * Built once per mime type instead of being looked up in the registry for every file.
+     */
+    private Timer getParseTimer(String mimeType) {
+        return parseTimers.computeIfAbsent(mimeType, key -> Timer.builder(PARSE_METRIC)
+                .description("Tika extraction time per file")
+                .tag(MIME_TYPE_TAG, key)
+                .register(meterRegistry));
+    }
+
+    private Document extractDocument(File file) {
         LOGGER.info(String.format(ADDING_FILE_TO_INDEX, file.getAbsolutePath()));
 
-        indexWriter.addDocument(buildDocument(file));
+        return buildDocument(file);
+    }
+
+    private void updateDocument(Document document) throws IOException {
+        indexWriter.updateDocument(new Term(Constants.PATH, document.get(Constants.PATH)), document);
+        documentsIndexed.increment();
+        backgroundCommitter.changed();
+    }
+
+    /**
+     * Adds or replaces a single file in the index, without committing.
+     */
+    public void indexFile(File file) throws IOException {
+        if (isProcessableFile(file)) {
+            updateDocument(extractDocument(file));
+        }
+    }
+
+    /**
+     * Removes a file, or every file under a directory, from the index, without committing.
+     */
+    public void removeFile(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        LOGGER.info(String.format(REMOVING_FILE_FROM_INDEX, path));
+
+        indexWriter.deleteDocuments(new Term(Constants.PATH, path));
+        indexWriter.deleteDocuments(new PrefixQuery(new Term(Constants.PATH, path + File.separator)));
+        documentsRemoved.increment();
+        backgroundCommitter.changed();
+    }
+
+    /**
+     * Brings the whole documents tree in sync with the index. The index is current once started, so only files that
+     * changed on disk are extracted again, whatever {@code indexer.incremental} says about the startup build.
+     */
+    public synchronized void synchronizeIndex() throws IOException {
+        buildIndex(documentsDirectoryPath, true);
+        commit();
     }
 
-    private void buildIndex(String directoryPathToBeIndexed) throws IOException {
+    public void commit() throws IOException {
+        long startedAt = System.nanoTime();
+        indexWriter.commit();
+        commitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Ends a batch of changes: commits it right away in batch mode, or leaves it to the background commits.
+     */
+    public void commitBatch() throws IOException {
+        if (!periodicCommits) {
+            commit();
+        }
+    }
+
+    private void removeDeletedFiles(IndexedFiles indexedFiles) throws IOException {
+        List<String> removedPaths = indexedFiles.getRemovedPaths();
+
+        for (String path : removedPaths) {
+            LOGGER.info(String.format(REMOVING_FILE_FROM_INDEX, path));
+            indexWriter.deleteDocuments(new Term(Constants.PATH, path));
+            documentsRemoved.increment();
+            backgroundCommitter.changed();
+        }
+        LOGGER.info(String.format(INCREMENTAL_SUMMARY, indexedFiles.getIndexedCount(), removedPaths.size()));
+    }
+
+    private void buildIndex(String directoryPathToBeIndexed, boolean skipUnchanged) throws IOException {
         LOGGER.info(BUILDING_THE_INDEX);
 
-        File[] files = new File(directoryPathToBeIndexed).listFiles();
+        File directory = new File(directoryPathToBeIndexed);
 
-        if (Objects.isNull(files)) {
+        if (Objects.isNull(directory.listFiles())) {
             LOGGER.error(EMPTY_DIRECTORY_ERROR);
         } else {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    buildIndex(file.getAbsolutePath());
-                }
-                if (isProcessableFile(file)) {
-                    addFileToIndex(file);
-                }
-            }
+            IndexedFiles indexedFiles = skipUnchanged ? IndexedFiles.load(indexWriter) : IndexedFiles.empty();
+
+            IngestionPipeline pipeline = new IngestionPipeline(getExtractionWorkers(), getWriterWorkers(),
+                    queueCapacity);
+            pipeline.run(directory, file -> isProcessableFile(file) && indexedFiles.isChanged(file),
+                    this::extractDocument, this::updateDocument);
+
+            removeDeletedFiles(indexedFiles);
+            collectExtractionCacheGarbage();
         }
         LOGGER.info(String.format(INDEX_BUILD_SUCCESS, indexWriter.numDocs()));
+        if (stemCache.isEnabled()) {
+            LOGGER.info(String.format(STEM_CACHE_STATS, stemCache.size(), stemCache.getHitRatio(),
+                    stemCache.getHits(), stemCache.getMisses()));
+        }
+        if (extractionCache.isEnabled()) {
+            LOGGER.info(String.format(EXTRACTION_CACHE_STATS, extractionCache.getHits(), extractionCache.getMisses()));
+        }
+    }
+
+    /**
+     * A failure here only leaves the garbage for the next build, it does not fail this one.
+     */
+    private void collectExtractionCacheGarbage() {
+        try {
+            extractionCache.collectGarbage();
+        } catch (IOException e) {
+            LOGGER.warn(String.format(EXTRACTION_CACHE_GC_ERROR, e));
+        }
+    }
+
+    /**
+     * A non positive worker count means one extraction worker per available core.
+     */
+    public int getExtractionWorkers() {
+        return extractionWorkers > 0 ? extractionWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * A non positive writer count means one writer per two available cores, at least one: writers analyze while the
+     * extraction workers parse, so the two pools share the cores.
+     */
+    public int getWriterWorkers() {
+        return writerWorkers > 0 ? writerWorkers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
     }
 
     private boolean isProcessableFile(File file) {
@@ -121,7 +532,10 @@ public class Indexer implements AutoCloseable {
     @PreDestroy
     @Override
     public void close() throws Exception {
+        backgroundCommitter.close();
         indexWriter.commit();
         indexWriter.close();
+        contentExtractor.close();
+        extractionCache.close();
     }
 }
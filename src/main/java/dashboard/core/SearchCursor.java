@@ -0,0 +1,34 @@
+package dashboard.core;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque pagination token wrapping the last hit of a page, to be handed back to
+ * {@link org.apache.lucene.search.IndexSearcher#searchAfter}.
+ */
+public final class SearchCursor {
+    private static final String SEPARATOR = ":";
+    private static final String INVALID_CURSOR = "Invalid search cursor %s";
+
+    private SearchCursor() {
+    }
+
+    public static String encode(ScoreDoc lastHit) {
+        String cursor = lastHit.doc + SEPARATOR + Float.floatToIntBits(lastHit.score);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ScoreDoc decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR);
+            return new ScoreDoc(Integer.parseInt(parts[0]), Float.intBitsToFloat(Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(String.format(INVALID_CURSOR, cursor), e);
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package dashboard.core;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Receives the parts of a search result as they become available. Implementations must tolerate hits written from
+ * several threads.
+ */
+public interface SearchResultStream {
+
+    void writeSearchDetails(Map<String, String> searchDetails) throws IOException;
+
+    void writeHit(Map<String, String> documentDetails) throws IOException;
+
+}
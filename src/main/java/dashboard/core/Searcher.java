@@ -1,39 +1,74 @@
 package dashboard.core;
 
+import dashboard.resource.HitExplanation;
+import dashboard.resource.SearchRequest;
 import dashboard.resource.SearchResult;
+import dashboard.resource.TermExplanation;
 import dashboard.service.HighlighterService;
 import dashboard.utils.Constants;
+import dashboard.utils.LruCache;
+import dashboard.utils.NamedThreadFactory;
+import dashboard.utils.SelectiveFieldsVisitor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Ionut Emanuel Mihailescu on 3/19/18.
  */
 @Component
 @DependsOn("indexer")
-public class Searcher {
+public class Searcher implements AutoCloseable {
     private static final Logger LOGGER = Logger.getLogger(Searcher.class);
 
     private static final String STATUS = "status";
@@ -43,13 +78,44 @@ public class Searcher {
     private static final String SEARCH_ERROR = "Search for query %s , failed due to %s .";
     private static final int ZERO = 0;
     private static final String ERROR = "error";
-    private static final String LONG_LINE = "-------------------------------";
     private static final String ONE_SPACE = " ";
-    private static final String TFIDF = "TFIDF: ";
-    private static final String TF = "TF: ";
-    private static final String IDF = "IDF: ";
-    private static final String ARROW = " -> ";
-    private static final String END_OF_LINE = "\n";
+    private static final String RELEASE_ERROR = "Error while releasing the index searcher: %s";
+    private static final String REFRESH_THREAD_NAME = "searcher-refresh";
+    private static final double MILLIS_PER_SECOND = 1000.0;
+    private static final String REJECTED = "rejected";
+    private static final String QUEUE_TIME_MS = "queueTimeMs";
+    private static final String EXECUTION_TIME_MS = "executionTimeMs";
+    private static final String SEARCH_REJECTED =
+            "Search for query %s rejected, %d queries still waiting for admission.";
+    private static final String FINISHED_SEARCH = "Finished search for query %s in %d ms after %d ms in queue.";
+    private static final String SEARCH_THREAD_NAME = "search";
+    private static final String CACHED = "cached";
+    private static final String TOTAL_HITS = "totalHits";
+    private static final String BATCH_THREAD_NAME = "search-batch";
+    private static final String HIGHLIGHT_THREAD_NAME = "search-highlight";
+    private static final String RANK = "rank";
+    private static final String BATCH_QUERIES = " batched queries";
+    private static final String STARTED_BATCH_SEARCH = "Started batch search for %d queries.";
+    private static final String FINISHED_BATCH_SEARCH = "Finished batch search for %d queries in %d ms.";
+    private static final String BATCH_TOO_LARGE = "Batch of %d queries rejected, at most %d are allowed.";
+    private static final String NEXT_CURSOR = "nextCursor";
+    private static final String CACHE_KEY_SEPARATOR = ":";
+    private static final String CACHED_SEARCH = "Answered query %s from the result cache.";
+    private static final String CACHE_INVALIDATED =
+            "Query result cache cleared after index refresh, hit ratio %.2f (%d hits, %d misses).";
+    private static final String REQUEST_METRIC = "search.request";
+    private static final String QUEUE_METRIC = "search.queue";
+    private static final String PARSE_METRIC = "search.parse";
+    private static final String EXECUTE_METRIC = "search.execute";
+    private static final String STORED_FIELDS_METRIC = "search.stored.fields";
+    private static final String REJECTED_METRIC = "search.rejected";
+    private static final String SEGMENTS_METRIC = "index.segments";
+    private static final String CACHE_HITS_METRIC = "cache.query.results.hits";
+    private static final String CACHE_MISSES_METRIC = "cache.query.results.misses";
+    private static final String CACHE_SIZE_METRIC = "cache.query.results.size";
+    private static final String CACHE_HIT_RATIO_METRIC = "cache.query.results.hit.ratio";
+    private static final String OUTCOME_TAG = "outcome";
+    private static final Set<String> FILE_NAME_FIELD = Collections.singleton(Constants.FILE_NAME);
 
     @Autowired
     private Indexer indexer;
@@ -57,123 +123,670 @@ public class Searcher {
     @Autowired
     private HighlighterService highlighterService;
 
-    private IndexSearcher indexSearcher;
+    @Autowired
+    private Analyzer analyzer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${searcher.max.staleness.ms:100}")
+    private long maxStalenessMillis;
+
+    @Value("${searcher.min.staleness.ms:10}")
+    private long minStalenessMillis;
+
+    @Value("${searcher.threads:0}")
+    private int searchThreads;
+
+    @Value("${searcher.max.concurrent.queries:0}")
+    private int maxConcurrentQueries;
+
+    @Value("${searcher.admission.timeout.ms:1000}")
+    private long admissionTimeoutMillis;
+
+    @Value("${searcher.batch.threads:0}")
+    private int batchThreads;
+
+    @Value("${searcher.max.batch.size:50}")
+    private int maxBatchSize;
+
+    @Value("${searcher.highlight.threads:0}")
+    private int highlightThreads;
+
+    @Value("${searcher.max.page.size:100}")
+    private int maxPageSize;
+
+    @Value("${cache.query.results.max.entries:1000}")
+    private long queryResultCacheMaxEntries;
+
+    private SearcherManager searcherManager;
+
+    private ControlledRealTimeReopenThread<IndexSearcher> refreshThread;
+
+    private ExecutorService searchExecutor;
+
+    /**
+     * Separate from {@link #searchExecutor}: batch tasks block on segment tasks, and sharing one bounded pool between
+     * the two could deadlock.
+     */
+    private ExecutorService batchExecutor;
+
+    private ExecutorService highlightExecutor;
+
+    private Semaphore admission;
+
+    private LruCache<String, SearchResult> queryResultCache;
 
-    private QueryParser queryParser;
+    /**
+     * Bumped on every reader refresh and prefixed to the cache keys, so results computed against an older reader are
+     * never served again even if they are stored after the refresh.
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    private Timer queueTimer;
+
+    private Timer parseTimer;
+
+    private Timer executeTimer;
+
+    private Timer storedFieldsTimer;
+
+    private Counter rejectedCounter;
+
+    /**
+     * One request timer per outcome, built once instead of being looked up in the registry on every request.
+     */
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
 
     @PostConstruct
     private void createIndexSearcher() throws IOException {
-        Directory indexDirectory = FSDirectory.open(Paths.get(indexer.getIndexDirectoryPath()));
-        DirectoryReader directoryReader = DirectoryReader.open(indexDirectory);
+        int threads = searchThreads > 0 ? searchThreads : Runtime.getRuntime().availableProcessors();
+        searchExecutor = Executors.newFixedThreadPool(threads, new NamedThreadFactory(SEARCH_THREAD_NAME));
+        batchExecutor = Executors.newFixedThreadPool(batchThreads > 0 ? batchThreads : threads,
+                new NamedThreadFactory(BATCH_THREAD_NAME));
+        highlightExecutor = Executors.newFixedThreadPool(highlightThreads > 0 ? highlightThreads : threads,
+                new NamedThreadFactory(HIGHLIGHT_THREAD_NAME));
+        admission = new Semaphore(maxConcurrentQueries > 0 ? maxConcurrentQueries : threads, true);
+        queryResultCache = new LruCache<>(queryResultCacheMaxEntries);
+
+        searcherManager = new SearcherManager(indexer.getIndexWriter(), new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                return new IndexSearcher(reader, searchExecutor);
+            }
+        });
+        searcherManager.addListener(new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {
+            }
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (didRefresh) {
+                    invalidateQueryResultCache();
+                }
+            }
+        });
+
+        refreshThread = new ControlledRealTimeReopenThread<>(indexer.getIndexWriter(), searcherManager,
+                maxStalenessMillis / MILLIS_PER_SECOND, minStalenessMillis / MILLIS_PER_SECOND);
+        refreshThread.setName(REFRESH_THREAD_NAME);
+        refreshThread.setDaemon(true);
+        refreshThread.start();
+
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        queueTimer = Timer.builder(QUEUE_METRIC).description("Time spent waiting for admission")
+                .register(meterRegistry);
+        parseTimer = Timer.builder(PARSE_METRIC).description("Query parsing time").register(meterRegistry);
+        executeTimer = Timer.builder(EXECUTE_METRIC).description("Time spent collecting the top hits")
+                .register(meterRegistry);
+        storedFieldsTimer = Timer.builder(STORED_FIELDS_METRIC).description("Stored fields load time per hit")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder(REJECTED_METRIC).description("Searches rejected at admission")
+                .register(meterRegistry);
+        for (String outcome : Arrays.asList(SUCCESS, ERROR, CACHED)) {
+            getRequestTimer(outcome);
+        }
+        Gauge.builder(SEGMENTS_METRIC, this, Searcher::countSegments).description("Segments in the current reader")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_HITS_METRIC, queryResultCache, LruCache::getHits)
+                .description("Searches answered from the result cache").register(meterRegistry);
+        FunctionCounter.builder(CACHE_MISSES_METRIC, queryResultCache, LruCache::getMisses)
+                .description("Cacheable searches not found in the result cache").register(meterRegistry);
+        Gauge.builder(CACHE_SIZE_METRIC, queryResultCache, LruCache::size)
+                .description("Results held by the result cache").register(meterRegistry);
+        Gauge.builder(CACHE_HIT_RATIO_METRIC, queryResultCache, LruCache::getHitRatio)
+                .description("Share of cacheable searches answered from the result cache").register(meterRegistry);
+    }
+
+    private double countSegments() {
+        IndexSearcher indexSearcher = null;
+        try {
+            indexSearcher = searcherManager.acquire();
+            return indexSearcher.getIndexReader().leaves().size();
+        } catch (IOException e) {
+            return Double.NaN;
+        } finally {
+            release(indexSearcher);
+        }
+    }
 
-        queryParser = new QueryParser(Constants.CONTENT, indexer.getIndexWriter().getAnalyzer());
-        indexSearcher = new IndexSearcher(directoryReader);
+    private Query parseQuery(String query) throws ParseException {
+        long startedAt = System.nanoTime();
+        Query parsedQuery = new QueryParser(Constants.CONTENT, analyzer).parse(query);
+        parseTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return parsedQuery;
     }
 
-    private TopDocs executeQuery(String query) throws ParseException, IOException {
-        return indexSearcher.search(queryParser.parse(query), Constants.MAX_HITS);
+    private TopDocs executeQuery(IndexSearcher indexSearcher, Query parsedQuery, int pageSize, ScoreDoc after)
+            throws IOException {
+        long startedAt = System.nanoTime();
+        TopDocs hits = Objects.isNull(after) ? indexSearcher.search(parsedQuery, pageSize)
+                : indexSearcher.searchAfter(after, parsedQuery, pageSize);
+        executeTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+        return hits;
     }
 
 
     public SearchResult search(String query) {
+        return search(new SearchRequest(query, null, null, false));
+    }
+
+    public SearchResult search(SearchRequest searchRequest) {
+        String query = searchRequest.getQuery();
         LOGGER.info(String.format(STARTED_SEARCH, query));
 
+        long queuedAt = System.nanoTime();
+        int pageSize = getPageSize(searchRequest);
+        Query parsedQuery;
+        try {
+            parsedQuery = parseQuery(query);
+        } catch (ParseException e) {
+            LOGGER.error(String.format(SEARCH_ERROR, query, e));
+            SearchResult searchResult = createStatusResult(ERROR);
+            addTimingDetails(searchResult, query, 0, System.nanoTime() - queuedAt);
+            recordRequest(ERROR, 0, System.nanoTime() - queuedAt);
+            return searchResult;
+        }
+
+        String cacheKey = searchRequest.isExplain() ? null
+                : getCacheKey(parsedQuery, pageSize, searchRequest.getCursor());
+        SearchResult cachedResult = Objects.nonNull(cacheKey) ? queryResultCache.get(cacheKey) : null;
+
+        if (Objects.nonNull(cachedResult)) {
+            LOGGER.info(String.format(CACHED_SEARCH, query));
+            SearchResult searchResult = cachedResult.copy();
+            searchResult.addSearchDetail(CACHED, String.valueOf(true));
+            addTimingDetails(searchResult, query, 0, System.nanoTime() - queuedAt);
+            recordRequest(CACHED, 0, System.nanoTime() - queuedAt);
+            return searchResult;
+        }
+
         SearchResult searchResult = new SearchResult();
 
-        double numDocs = indexSearcher.getIndexReader().numDocs();
-        String[] searchTerms = query.toLowerCase().split(ONE_SPACE);
+        if (!admit()) {
+            LOGGER.warn(String.format(SEARCH_REJECTED, query, admission.getQueueLength()));
+            rejectedCounter.increment();
+            addSearchDetails(searchResult, REJECTED, ZERO);
+            return searchResult;
+        }
+
+        long startedAt = System.nanoTime();
+        try {
+            executeSearch(query, parsedQuery, pageSize, searchRequest.getCursor(), searchRequest.isExplain(),
+                    searchResult);
+        } finally {
+            admission.release();
+            long executionNanos = System.nanoTime() - startedAt;
+            addTimingDetails(searchResult, query, startedAt - queuedAt, executionNanos);
+            recordRequest(searchResult.getSearchDetails().get(STATUS), startedAt - queuedAt, executionNanos);
+        }
 
-        StringBuilder idf = new StringBuilder();
+        searchResult.addSearchDetail(CACHED, String.valueOf(false));
+        if (Objects.nonNull(cacheKey) && SUCCESS.equals(searchResult.getSearchDetails().get(STATUS))) {
+            queryResultCache.put(cacheKey, searchResult.copy());
+        }
 
-        Map<String, Double> idfValues = new HashMap<>();
+        return searchResult;
+    }
+
+    /**
+     * Keys the result cache on the analyzed form of the query, so different spellings of the same terms share an
+     * entry. Returns {@code null} when caching is disabled.
+     */
+    private String getCacheKey(Query parsedQuery, int pageSize, String cursor) {
+        if (!queryResultCache.isEnabled()) {
+            return null;
+        }
+        return cacheGeneration.get() + CACHE_KEY_SEPARATOR + pageSize + CACHE_KEY_SEPARATOR + cursor
+                + CACHE_KEY_SEPARATOR + parsedQuery.toString();
+    }
 
+    private void invalidateQueryResultCache() {
+        cacheGeneration.incrementAndGet();
+        if (queryResultCache.size() > 0) {
+            queryResultCache.clear();
+            LOGGER.info(String.format(CACHE_INVALIDATED, queryResultCache.getHitRatio(),
+                    queryResultCache.getHits(), queryResultCache.getMisses()));
+        }
+    }
+
+    /**
+     * Bounds the number of queries fanning out over the search pool, so concurrent requests wait here instead of
+     * oversubscribing the executor.
+     */
+    private boolean admit() {
         try {
-            for (String word : searchTerms) {
-                TopDocs hits = executeQuery(word);
-                double value = Math.log10(numDocs / (double) hits.totalHits);
-                idf.append(IDF).append(word).append(ARROW).append(value).append("\n");
-                idfValues.put(word, value);
-            }
+            return admission.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void addTimingDetails(SearchResult searchResult, String query, long queueNanos, long executionNanos) {
+        long queueMillis = TimeUnit.NANOSECONDS.toMillis(queueNanos);
+        long executionMillis = TimeUnit.NANOSECONDS.toMillis(executionNanos);
+
+        searchResult.addSearchDetail(QUEUE_TIME_MS, String.valueOf(queueMillis));
+        searchResult.addSearchDetail(EXECUTION_TIME_MS, String.valueOf(executionMillis));
+        LOGGER.info(String.format(FINISHED_SEARCH, query, executionMillis, queueMillis));
+    }
+
+    /**
+     * Records the time spent waiting for admission and, tagged with the outcome, the time spent answering.
+     */
+    private void recordRequest(String outcome, long queueNanos, long executionNanos) {
+        queueTimer.record(queueNanos, TimeUnit.NANOSECONDS);
+        getRequestTimer(String.valueOf(outcome)).record(executionNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer getRequestTimer(String outcome) {
+        return requestTimers.computeIfAbsent(outcome, key -> Timer.builder(REQUEST_METRIC)
+                .description("Search time from admission to the last highlighted hit")
+                .tag(OUTCOME_TAG, key)
+                .register(meterRegistry));
+    }
 
-            System.out.println(LONG_LINE);
-            System.out.println(idf);
+    private int getPageSize(SearchRequest searchRequest) {
+        if (Objects.isNull(searchRequest.getPageSize()) || searchRequest.getPageSize() <= 0) {
+            return Constants.MAX_HITS;
+        }
+        return Math.min(searchRequest.getPageSize(), maxPageSize);
+    }
 
-            TopDocs hits = executeQuery(query);
+    private void executeSearch(String query, Query parsedQuery, int pageSize, String cursor, boolean explain,
+                               SearchResult searchResult) {
+        IndexSearcher indexSearcher = null;
+        try {
+            indexSearcher = searcherManager.acquire();
+            executeSearch(indexSearcher, query, parsedQuery, pageSize, cursor, explain, searchResult);
+        } catch (IOException e) {
+            LOGGER.error(String.format(SEARCH_ERROR, query, e));
+            addSearchDetails(searchResult, ERROR, ZERO);
+        } finally {
+            release(indexSearcher);
+        }
+    }
+
+    private void executeSearch(IndexSearcher indexSearcher, String query, Query parsedQuery, int pageSize,
+                               String cursor, boolean explain, SearchResult searchResult) {
+        try {
+            ScoreDoc after = Objects.nonNull(cursor) ? SearchCursor.decode(cursor) : null;
+
+            TopDocs hits = executeQuery(indexSearcher, parsedQuery, pageSize, after);
 
             if (Objects.nonNull(hits)) {
 
                 addSearchDetails(searchResult, SUCCESS, hits.scoreDocs.length);
-                addDocumentsDetails(searchResult, hits, query, idfValues);
+                addPagingDetails(searchResult, hits, pageSize);
+                addDocumentsDetails(indexSearcher, searchResult, hits, query);
+                if (explain) {
+                    addExplanations(indexSearcher.getIndexReader(), searchResult, hits, query);
+                }
 
             } else {
                 addSearchDetails(searchResult, SUCCESS, ZERO);
             }
-        } catch (ParseException | IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             LOGGER.error(String.format(SEARCH_ERROR, query, e));
             addSearchDetails(searchResult, ERROR, ZERO);
         }
+    }
+
+    /**
+     * Runs several queries concurrently against a single reader snapshot, so their results are consistent with each
+     * other. Identical requests in the batch are executed once. Every query dispatched takes its own admission permit,
+     * so a batch counts against the concurrency cap like the same queries sent one by one, and a query that is not
+     * admitted in time is answered as rejected on its own. The batch bypasses the result cache, whose entries may
+     * come from another snapshot.
+     */
+    public List<SearchResult> searchBatch(List<SearchRequest> searchRequests) {
+        LOGGER.info(String.format(STARTED_BATCH_SEARCH, searchRequests.size()));
+        long startedAt = System.nanoTime();
+
+        if (searchRequests.size() > maxBatchSize) {
+            LOGGER.warn(String.format(BATCH_TOO_LARGE, searchRequests.size(), maxBatchSize));
+            return createBatchResults(searchRequests.size(), REJECTED);
+        }
+
+        IndexSearcher indexSearcher = null;
+        try {
+            indexSearcher = searcherManager.acquire();
+            IndexSearcher snapshot = indexSearcher;
+
+            Map<String, CompletableFuture<SearchResult>> distinctSearches = new HashMap<>();
+            List<CompletableFuture<SearchResult>> searches = new ArrayList<>();
+            for (SearchRequest searchRequest : searchRequests) {
+                int pageSize = getPageSize(searchRequest);
+                String batchKey = pageSize + CACHE_KEY_SEPARATOR + searchRequest.getCursor() + CACHE_KEY_SEPARATOR
+                        + searchRequest.isExplain() + CACHE_KEY_SEPARATOR + searchRequest.getQuery();
+
+                searches.add(distinctSearches.computeIfAbsent(batchKey,
+                        key -> submitBatchSearch(snapshot, searchRequest, pageSize)));
+            }
+
+            List<SearchResult> searchResults = new ArrayList<>();
+            for (int i = 0; i < searches.size(); i++) {
+                searchResults.add(joinBatchSearch(searches.get(i), searchRequests.get(i)));
+            }
+            return searchResults;
+        } catch (IOException e) {
+            LOGGER.error(String.format(SEARCH_ERROR, searchRequests.size() + BATCH_QUERIES, e));
+            return createBatchResults(searchRequests.size(), ERROR);
+        } finally {
+            release(indexSearcher);
+            LOGGER.info(String.format(FINISHED_BATCH_SEARCH, searchRequests.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+        }
+    }
+
+    private CompletableFuture<SearchResult> submitBatchSearch(IndexSearcher snapshot, SearchRequest searchRequest,
+                                                              int pageSize) {
+        if (!admit()) {
+            LOGGER.warn(String.format(SEARCH_REJECTED, searchRequest.getQuery(), admission.getQueueLength()));
+            rejectedCounter.increment();
+            return CompletableFuture.completedFuture(createStatusResult(REJECTED));
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    SearchResult searchResult = new SearchResult();
+                    executeSearch(snapshot, searchRequest.getQuery(), parseQuery(searchRequest.getQuery()), pageSize,
+                            searchRequest.getCursor(), searchRequest.isExplain(), searchResult);
+                    return searchResult;
+                } catch (ParseException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    admission.release();
+                }
+            }, batchExecutor);
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            CompletableFuture<SearchResult> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * A query failing on its own only turns its own entry of the batch into an error.
+     */
+    private SearchResult joinBatchSearch(CompletableFuture<SearchResult> search, SearchRequest searchRequest) {
+        try {
+            return search.join().copy();
+        } catch (CompletionException e) {
+            LOGGER.error(String.format(SEARCH_ERROR, searchRequest.getQuery(), e.getCause()));
+            return createStatusResult(ERROR);
+        }
+    }
+
+    private List<SearchResult> createBatchResults(int size, String status) {
+        List<SearchResult> searchResults = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            searchResults.add(createStatusResult(status));
+        }
+        return searchResults;
+    }
 
+    private SearchResult createStatusResult(String status) {
+        SearchResult searchResult = new SearchResult();
+        addSearchDetails(searchResult, status, ZERO);
         return searchResult;
     }
 
+    /**
+     * Maps every whitespace separated word of the query to the term it is indexed under, dropping stopwords.
+     */
+    private Map<String, String> analyzeSearchTerms(String query) throws IOException {
+        Map<String, String> analyzedTerms = new LinkedHashMap<>();
+
+        for (String word : query.toLowerCase().split(ONE_SPACE)) {
+            try (TokenStream tokenStream = analyzer.tokenStream(Constants.CONTENT, word)) {
+                CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+                tokenStream.reset();
+                if (tokenStream.incrementToken()) {
+                    analyzedTerms.put(word, charTermAttribute.toString());
+                }
+                tokenStream.end();
+            }
+        }
+
+        return analyzedTerms;
+    }
+
+    private Map<String, Double> computeIdfValues(IndexReader indexReader, Map<String, String> analyzedTerms)
+            throws IOException {
+        double numDocs = indexReader.numDocs();
+        Map<String, Double> idfValues = new HashMap<>();
+
+        for (Map.Entry<String, String> analyzedTerm : analyzedTerms.entrySet()) {
+            int docFreq = indexReader.docFreq(new Term(Constants.CONTENT, analyzedTerm.getValue()));
+            idfValues.put(analyzedTerm.getKey(), docFreq > 0 ? Math.log10(numDocs / docFreq) : 0);
+        }
+
+        return idfValues;
+    }
+
+    private void release(IndexSearcher indexSearcher) {
+        if (Objects.nonNull(indexSearcher)) {
+            try {
+                searcherManager.release(indexSearcher);
+            } catch (IOException e) {
+                LOGGER.error(String.format(RELEASE_ERROR, e));
+            }
+        }
+    }
+
     private void addSearchDetails(SearchResult searchResult, String status, int resultCount) {
         searchResult.addSearchDetail(STATUS, status);
         searchResult.addSearchDetail(RESULTS_COUNT, String.valueOf(resultCount));
     }
 
-    private void addDocumentsDetails(SearchResult searchResult, TopDocs hits, String query, Map<String, Double> idfValues) {
+    /**
+     * A full page gets a cursor pointing after its last hit; a shorter page is the last one.
+     */
+    private void addPagingDetails(SearchResult searchResult, TopDocs hits, int pageSize) {
+        searchResult.addSearchDetail(TOTAL_HITS, String.valueOf(hits.totalHits));
 
-        String[] searchTerms = query.toLowerCase().split(ONE_SPACE);
+        if (hits.scoreDocs.length == pageSize) {
+            searchResult.addSearchDetail(NEXT_CURSOR, SearchCursor.encode(hits.scoreDocs[hits.scoreDocs.length - 1]));
+        }
+    }
 
-        Arrays.stream(hits.scoreDocs).sorted((o1, o2) -> Math.round(o1.score - o2.score))
-                .forEachOrdered(hit -> {
-                    try {
-                        Document document = indexSearcher.getIndexReader().document(hit.doc);
-
-                        System.out.println(LONG_LINE + document.getField(Constants.FILE_NAME).stringValue() + LONG_LINE);
-
-                        StringBuilder tf = new StringBuilder();
-
-                        Map<String, Integer> documentWords = new HashMap<>();
-                        Terms terms = indexSearcher.getIndexReader().getTermVector(hit.doc, Constants.CONTENT);
-                        TermsEnum termsEnum = terms.iterator();
-                        BytesRef term;
-                        PostingsEnum postings = null;
-                        while ((term = termsEnum.next()) != null) {
-                            String termText = term.utf8ToString();
-                            postings = termsEnum.postings(postings, PostingsEnum.FREQS);
-                            postings.nextDoc();
-                            int freq = postings.freq();
-                            documentWords.put(termText, freq);
-                        }
-                        for (String word : searchTerms) {
-
-                            tf.append(TF).append(word).append(ARROW);
-                            Integer counter = documentWords.get(word.substring(0, word.length() - 1));
-                            double tfValue = 0;
-                            if (Objects.nonNull(counter)) {
-                                tfValue = 1 + Math.log10(counter);
-                            }
-                            tf.append(tfValue).append(END_OF_LINE);
-                            double idf = idfValues.get(word);
-                            tf.append(TFIDF).append(word).append(ARROW).append(tfValue * idf).append(END_OF_LINE);
-                        }
-
-                        String highlightedFragments = highlighterService.getHighlightedFragments(document, query);
-
-                        Map<String, String> documentDetails = new HashMap<>();
-                        documentDetails.put(Constants.CONTENT, highlightedFragments);
-                        documentDetails.put(Constants.FILE_NAME, document.get(Constants.FILE_NAME));
-                        searchResult.getSearchResults().add(documentDetails);
-
-                        System.out.println(tf.toString());
+    private void addDocumentsDetails(IndexSearcher indexSearcher, SearchResult searchResult, TopDocs hits,
+                                     String query) {
+
+        for (ScoreDoc hit : orderHits(hits)) {
+            try {
+                searchResult.getSearchResults().add(buildDocumentDetails(indexSearcher, hit, query));
+            } catch (IOException e) {
+                LOGGER.error(String.format(SEARCH_ERROR, query, e));
+            }
+        }
+    }
+
+    private ScoreDoc[] orderHits(TopDocs hits) {
+        return Arrays.stream(hits.scoreDocs).sorted((o1, o2) -> Math.round(o1.score - o2.score))
+                .toArray(ScoreDoc[]::new);
+    }
+
+    private Map<String, String> buildDocumentDetails(IndexSearcher indexSearcher, ScoreDoc hit, String query)
+            throws IOException {
+        long startedAt = System.nanoTime();
+        Document document = SelectiveFieldsVisitor.load(indexSearcher.getIndexReader(), hit.doc, FILE_NAME_FIELD);
+        storedFieldsTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+        String highlightedFragments = highlighterService.getHighlightedFragments(
+                indexSearcher.getIndexReader(), hit.doc, query);
+
+        Map<String, String> documentDetails = new HashMap<>();
+        documentDetails.put(Constants.CONTENT, highlightedFragments);
+        documentDetails.put(Constants.FILE_NAME, document.get(Constants.FILE_NAME));
+        return documentDetails;
+    }
+
+    /**
+     * Streams the search details as soon as the query has run, then every hit as soon as it is highlighted.
+     * Hits are highlighted in parallel and therefore arrive in completion order, each carrying its rank in the page.
+     */
+    public void searchStreaming(SearchRequest searchRequest, SearchResultStream stream) throws IOException {
+        String query = searchRequest.getQuery();
+        LOGGER.info(String.format(STARTED_SEARCH, query));
+
+        SearchResult searchResult = new SearchResult();
+        int pageSize = getPageSize(searchRequest);
+
+        long queuedAt = System.nanoTime();
+        if (!admit()) {
+            LOGGER.warn(String.format(SEARCH_REJECTED, query, admission.getQueueLength()));
+            rejectedCounter.increment();
+            addSearchDetails(searchResult, REJECTED, ZERO);
+            stream.writeSearchDetails(searchResult.getSearchDetails());
+            return;
+        }
 
+        long startedAt = System.nanoTime();
+        IndexSearcher indexSearcher = null;
+        try {
+            indexSearcher = searcherManager.acquire();
+            ScoreDoc after = Objects.nonNull(searchRequest.getCursor())
+                    ? SearchCursor.decode(searchRequest.getCursor()) : null;
+            TopDocs hits = executeQuery(indexSearcher, parseQuery(query), pageSize, after);
+
+            addSearchDetails(searchResult, SUCCESS, hits.scoreDocs.length);
+            addPagingDetails(searchResult, hits, pageSize);
+            stream.writeSearchDetails(searchResult.getSearchDetails());
+
+            streamDocumentsDetails(indexSearcher, hits, query, stream);
+        } catch (ParseException | IOException | IllegalArgumentException e) {
+            failStreaming(searchResult, stream, query, e);
+        } catch (CompletionException e) {
+            failStreaming(searchResult, stream, query, e.getCause());
+        } finally {
+            release(indexSearcher);
+            admission.release();
+            long executionNanos = System.nanoTime() - startedAt;
+            LOGGER.info(String.format(FINISHED_SEARCH, query, TimeUnit.NANOSECONDS.toMillis(executionNanos),
+                    TimeUnit.NANOSECONDS.toMillis(startedAt - queuedAt)));
+            recordRequest(searchResult.getSearchDetails().get(STATUS), startedAt - queuedAt, executionNanos);
+        }
+    }
+
+    /**
+     * Ends the stream with an error record, replacing any paging details of the page that did not complete. Writing it
+     * may fail as well when the failure came from the stream itself, which is only logged.
+     */
+    private void failStreaming(SearchResult searchResult, SearchResultStream stream, String query, Throwable cause) {
+        LOGGER.error(String.format(SEARCH_ERROR, query, cause));
+        searchResult.getSearchDetails().clear();
+        addSearchDetails(searchResult, ERROR, ZERO);
+        try {
+            stream.writeSearchDetails(searchResult.getSearchDetails());
+        } catch (IOException e) {
+            LOGGER.error(String.format(SEARCH_ERROR, query, e));
+        }
+    }
+
+    private void streamDocumentsDetails(IndexSearcher indexSearcher, TopDocs hits, String query,
+                                        SearchResultStream stream) {
+        ScoreDoc[] orderedHits = orderHits(hits);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+
+        for (int rank = 0; rank < orderedHits.length; rank++) {
+            ScoreDoc hit = orderedHits[rank];
+            String hitRank = String.valueOf(rank);
+
+            writes.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return buildDocumentDetails(indexSearcher, hit, query);
+                } catch (IOException e) {
+                    LOGGER.error(String.format(SEARCH_ERROR, query, e));
+                    return null;
+                }
+            }, highlightExecutor).thenAccept(documentDetails -> {
+                if (Objects.nonNull(documentDetails)) {
+                    documentDetails.put(RANK, hitRank);
+                    try {
+                        stream.writeHit(documentDetails);
                     } catch (IOException e) {
-                        e.printStackTrace();
+                        throw new UncheckedIOException(e);
                     }
-                });
+                }
+            }));
+        }
+
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
     }
 
+    /**
+     * Explains every hit in the order of the search results. Query terms are analyzed and their IDF computed once for
+     * the page, then looked up with {@code seekExact} in each hit's term vector.
+     */
+    private void addExplanations(IndexReader indexReader, SearchResult searchResult, TopDocs hits, String query)
+            throws IOException {
+        Map<String, String> analyzedTerms = analyzeSearchTerms(query);
+        Map<String, Double> idfValues = computeIdfValues(indexReader, analyzedTerms);
+
+        for (ScoreDoc hit : orderHits(hits)) {
+            String fileName = SelectiveFieldsVisitor.load(indexReader, hit.doc, FILE_NAME_FIELD)
+                    .get(Constants.FILE_NAME);
+            List<TermExplanation> termExplanations = new ArrayList<>();
+            Terms terms = indexReader.getTermVector(hit.doc, Constants.CONTENT);
+            TermsEnum termsEnum = Objects.nonNull(terms) ? terms.iterator() : null;
+            PostingsEnum postings = null;
+
+            for (Map.Entry<String, String> analyzedTerm : analyzedTerms.entrySet()) {
+                int frequency = 0;
+                if (Objects.nonNull(termsEnum) && termsEnum.seekExact(new BytesRef(analyzedTerm.getValue()))) {
+                    postings = termsEnum.postings(postings, PostingsEnum.FREQS);
+                    postings.nextDoc();
+                    frequency = postings.freq();
+                }
+
+                double tf = frequency > 0 ? 1 + Math.log10(frequency) : 0;
+                double idf = idfValues.get(analyzedTerm.getKey());
+                termExplanations.add(new TermExplanation(analyzedTerm.getKey(), analyzedTerm.getValue(), frequency,
+                        tf, idf, tf * idf));
+            }
 
-}
+            searchResult.getExplanations().add(new HitExplanation(fileName, hit.score, termExplanations));
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void close() throws Exception {
+        refreshThread.close();
+        searcherManager.close();
+        searchExecutor.shutdown();
+        batchExecutor.shutdown();
+        highlightExecutor.shutdown();
+    }
 
+}
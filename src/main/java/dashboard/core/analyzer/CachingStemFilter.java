@@ -0,0 +1,54 @@
+package dashboard.core.analyzer;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.tartarus.snowball.SnowballProgram;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Drop-in replacement for {@link org.apache.lucene.analysis.snowball.SnowballFilter} that looks every term up in a
+ * shared {@link StemCache} before running the stemmer, which is only invoked on misses.
+ */
+public final class CachingStemFilter extends TokenFilter {
+
+    private final SnowballProgram stemmer;
+    private final StemCache stemCache;
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private final KeywordAttribute keywordAttribute = addAttribute(KeywordAttribute.class);
+    private final StemCache.Term term = new StemCache.Term();
+
+    public CachingStemFilter(TokenStream input, SnowballProgram stemmer, StemCache stemCache) {
+        super(input);
+        this.stemmer = stemmer;
+        this.stemCache = stemCache;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken()) {
+            return false;
+        }
+        if (keywordAttribute.isKeyword()) {
+            return true;
+        }
+
+        char[] stem = stemCache.get(term.set(termAttribute.buffer(), termAttribute.length()));
+        if (Objects.nonNull(stem)) {
+            termAttribute.copyBuffer(stem, 0, stem.length);
+            return true;
+        }
+
+        // the stemmer works in place, so it gets a copy and the term buffer stays intact as the cache key
+        stemmer.setCurrent(Arrays.copyOf(termAttribute.buffer(), termAttribute.length()), termAttribute.length());
+        stemmer.stem();
+        stemCache.put(term, stemmer.getCurrentBuffer(), stemmer.getCurrentBufferLength());
+        termAttribute.copyBuffer(stemmer.getCurrentBuffer(), 0, stemmer.getCurrentBufferLength());
+        return true;
+    }
+
+}
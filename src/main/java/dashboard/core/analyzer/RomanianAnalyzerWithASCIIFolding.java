@@ -1,7 +1,6 @@
 package dashboard.core.analyzer;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.LowerCaseFilter;
@@ -14,30 +13,29 @@ import org.apache.lucene.analysis.standard.StandardFilter;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.tartarus.snowball.ext.RomanianStemmer;
 
-import javax.annotation.PostConstruct;
-import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
-import static dashboard.utils.Constants.stopwordsPath;
-
 /**
  * Created by Ionut Emanuel Mihailescu on 3/24/18.
+ *
+ * Thread-safe: the inherited reuse strategy keeps one set of token stream components per thread, so a single
+ * instance, shared as a Spring bean, serves indexing and search alike.
  */
 public class RomanianAnalyzerWithASCIIFolding extends Analyzer {
-    public static final String ERROR_WHILE_LOADING_STOPWORDS = "Error while loading the stopwords: %s";
-    private static final Logger LOGGER = Logger.getLogger(RomanianAnalyzerWithASCIIFolding.class);
-    CharArraySet stopwords;
+    private final CharArraySet stopwords;
+    private final StemCache stemCache;
 
-    public RomanianAnalyzerWithASCIIFolding() {
-        this.stopwords = loadStopwords();
+    public RomanianAnalyzerWithASCIIFolding(CharArraySet stopwords) {
+        this(stopwords, new StemCache(0));
     }
 
-    @PostConstruct
-    public void init() {
-        this.stopwords = loadStopwords();
+    public RomanianAnalyzerWithASCIIFolding(CharArraySet stopwords, StemCache stemCache) {
+        this.stopwords = CharArraySet.unmodifiableSet(stopwords);
+        this.stemCache = stemCache;
     }
 
     protected TokenStreamComponents createComponents(String fieldName) {
@@ -47,29 +45,32 @@ public class RomanianAnalyzerWithASCIIFolding extends Analyzer {
         result = new LowerCaseFilter(result);
         result = new ASCIIFoldingFilter(result);
         result = new StopFilter(result, this.stopwords);
-        result = new SnowballFilter(result, new RomanianStemmer());
+        if (stemCache.isEnabled()) {
+            result = new CachingStemFilter(result, new RomanianStemmer(), stemCache);
+        } else {
+            result = new SnowballFilter(result, new RomanianStemmer());
+        }
 
         return new TokenStreamComponents(source, result);
     }
 
-    private CharArraySet loadStopwords() {
+    /**
+     * Reads one stopword per line, adding each word both as written and without diacritics.
+     */
+    public static CharArraySet loadStopwords(InputStream inputStream) {
         List<String> stopWordsAsStrings = new ArrayList<>();
 
-        try (Scanner scanner = new Scanner(Paths.get(stopwordsPath))) {
+        try (Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name())) {
 
-            while (scanner.hasNext()) {
+            while (scanner.hasNextLine()) {
                 String stopword = scanner.nextLine();
                 stopWordsAsStrings.add(stopword);
                 stopWordsAsStrings.add(StringUtils.stripAccents(stopword));
             }
 
-        } catch (IOException e) {
-            LOGGER.error(String.format(ERROR_WHILE_LOADING_STOPWORDS, e));
         }
 
-        CharArraySet stopwords = new CharArraySet(stopWordsAsStrings, false);
-
-        return stopwords;
+        return new CharArraySet(stopWordsAsStrings, false);
     }
 
 }
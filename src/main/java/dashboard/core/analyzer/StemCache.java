@@ -0,0 +1,116 @@
+package dashboard.core.analyzer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stems shared by every analysis thread, keyed on the folded lowercase term reaching the stemmer. Natural language
+ * vocabularies repeat heavily, so once the cache is full new terms are simply stemmed without being remembered; the
+ * hot words are already in by then. A non positive capacity disables the cache.
+ * <p>
+ * Terms are looked up straight from the analysis buffer through a reusable {@link Term}, and stems are returned as
+ * shared buffers to copy from, so a hit allocates nothing.
+ */
+public class StemCache {
+
+    private final int maxEntries;
+    private final Map<Term, char[]> stems = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StemCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * The returned buffer is shared by every thread and must not be modified.
+     */
+    public char[] get(Term term) {
+        char[] stem = stems.get(term);
+        if (Objects.isNull(stem)) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return stem;
+    }
+
+    public void put(Term term, char[] stem, int length) {
+        if (stems.size() < maxEntries) {
+            stems.put(term.copy(), Arrays.copyOf(stem, length));
+        }
+    }
+
+    public int size() {
+        return stems.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * A term as the first characters of a buffer. A filter keeps one and points it at its term buffer for every
+     * lookup; the cache only ever stores copies.
+     */
+    public static final class Term {
+        private char[] buffer;
+        private int length;
+        private int hash;
+
+        public Term set(char[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + buffer[i];
+            }
+            this.hash = h;
+            return this;
+        }
+
+        private Term copy() {
+            return new Term().set(Arrays.copyOf(buffer, length), length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Term)) {
+                return false;
+            }
+            Term term = (Term) other;
+            if (term.hash != hash || term.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (term.buffer[i] != buffer[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
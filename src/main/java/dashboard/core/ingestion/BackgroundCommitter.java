@@ -0,0 +1,91 @@
+package dashboard.core.ingestion;
+
+import dashboard.utils.NamedThreadFactory;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commits the index from a background thread once changes have been pending for an interval or once enough of them
+ * have piled up, whichever comes first, bounding what a crash can lose without committing on the writers' threads.
+ * A non positive interval or document count disables that trigger.
+ */
+public class BackgroundCommitter implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(BackgroundCommitter.class);
+    private static final String COMMIT_ERROR = "Background commit of %d changes failed, retrying with the next one: %s";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final Commit commit;
+    private final long intervalMillis;
+    private final long maxChanges;
+    private final AtomicLong pendingChanges = new AtomicLong();
+    private final AtomicBoolean commitRequested = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    public BackgroundCommitter(Commit commit, long intervalMillis, long maxChanges) {
+        this.commit = commit;
+        this.intervalMillis = intervalMillis;
+        this.maxChanges = maxChanges;
+    }
+
+    public void start() {
+        if (intervalMillis <= 0 && maxChanges <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("index-commit"));
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::commitPendingChanges, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Records a change handed to the writer and asks for a commit once {@code maxChanges} are pending.
+     */
+    public void changed() {
+        long pending = pendingChanges.incrementAndGet();
+        if (maxChanges > 0 && pending >= maxChanges && Objects.nonNull(scheduler)
+                && commitRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::commitPendingChanges);
+        }
+    }
+
+    private void commitPendingChanges() {
+        commitRequested.set(false);
+        long changes = pendingChanges.getAndSet(0);
+        if (changes == 0) {
+            return;
+        }
+
+        try {
+            commit.commit();
+        } catch (IOException | RuntimeException e) {
+            pendingChanges.addAndGet(changes);
+            LOGGER.error(String.format(COMMIT_ERROR, changes, e));
+        }
+    }
+
+    /**
+     * Stops the background commits. Changes still pending are left to the caller's final commit.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (Objects.isNull(scheduler)) {
+            return;
+        }
+        scheduler.shutdown();
+        scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @FunctionalInterface
+    public interface Commit {
+        void commit() throws IOException;
+    }
+
+}
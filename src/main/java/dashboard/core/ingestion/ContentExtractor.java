@@ -0,0 +1,243 @@
+package dashboard.core.ingestion;
+
+import dashboard.utils.NamedThreadFactory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.tika.Tika;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extracts the text of files with Tika. The parser writes its output straight into a buffer capped at a maximum number
+ * of characters, so a huge file costs no more memory than the cap. Every parse runs on a worker of its own: one
+ * running past the timeout is abandoned, its worker is interrupted and fails at its next read or write, and the caller
+ * moves on without waiting for it.
+ * <p>
+ * The pool holds one worker per caller plus a small margin for abandoned parses that have not noticed the interrupt
+ * yet. Should more of them linger, new parses queue behind them and the wait counts against their timeout, so a
+ * parser that ignores interrupts costs throughput instead of an unbounded number of threads.
+ */
+public class ContentExtractor implements AutoCloseable {
+    private static final String THREAD_NAME = "tika-extraction";
+    private static final String EMPTY_STRING = "";
+    private static final String UNKNOWN_MIME_TYPE = "unknown";
+    private static final String ABANDONED = "Extraction abandoned";
+    private static final int UNLIMITED = -1;
+    private static final int ABANDONED_MARGIN = 2;
+
+    public enum Status {
+        EXTRACTED, TRUNCATED, TIMED_OUT, FAILED
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Extraction {
+        private final String text;
+        private final String mimeType;
+        private final Status status;
+        private final Throwable failure;
+    }
+
+    private final Tika tika = new Tika();
+    private final int maxChars;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    /**
+     * {@code workers} is the number of threads calling {@link #extract(File)} concurrently. Non positive limits disable
+     * the character cap and the timeout.
+     */
+    public ContentExtractor(int maxChars, long timeoutMillis, int workers) {
+        this.maxChars = maxChars;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, workers) + ABANDONED_MARGIN,
+                new NamedThreadFactory(THREAD_NAME));
+    }
+
+    public Extraction extract(File file) {
+        ParseTask task = new ParseTask(file);
+        Future<Extraction> parse = executor.submit(task);
+        try {
+            return timeoutMillis > 0 ? parse.get(timeoutMillis, TimeUnit.MILLISECONDS) : parse.get();
+        } catch (TimeoutException e) {
+            task.abandon();
+            parse.cancel(true);
+            return new Extraction(EMPTY_STRING, detectMimeType(file), Status.TIMED_OUT, e);
+        } catch (ExecutionException e) {
+            return new Extraction(EMPTY_STRING, detectMimeType(file), Status.FAILED, e.getCause());
+        } catch (InterruptedException e) {
+            task.abandon();
+            parse.cancel(true);
+            Thread.currentThread().interrupt();
+            return new Extraction(EMPTY_STRING, detectMimeType(file), Status.FAILED, e);
+        }
+    }
+
+    /**
+     * Parses running on a worker, abandoned ones included.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Parses whose caller gave up on them but which still hold a worker.
+     */
+    public int getAbandoned() {
+        return abandoned.get();
+    }
+
+    private Extraction parse(File file) throws IOException, SAXException, TikaException {
+        Metadata metadata = new Metadata();
+        WriteOutContentHandler handler = new WriteOutContentHandler(maxChars > 0 ? maxChars : UNLIMITED);
+        Parser parser = tika.getParser();
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, parser);
+
+        Status status = Status.EXTRACTED;
+        try (InputStream inputStream = new InterruptibleInputStream(TikaInputStream.get(file.toPath(), metadata))) {
+            parser.parse(inputStream, new InterruptibleContentHandler(new BodyContentHandler(handler)), metadata,
+                    context);
+        } catch (SAXException e) {
+            if (!handler.isWriteLimitReached(e)) {
+                throw e;
+            }
+            status = Status.TRUNCATED;
+        }
+
+        return new Extraction(handler.toString(), getMimeType(metadata), status, null);
+    }
+
+    /**
+     * The detected type without its parameters, so text files in different charsets share one tag.
+     */
+    private String getMimeType(Metadata metadata) {
+        MediaType mediaType = MediaType.parse(metadata.get(Metadata.CONTENT_TYPE));
+        return Objects.nonNull(mediaType) ? mediaType.getBaseType().toString() : UNKNOWN_MIME_TYPE;
+    }
+
+    /**
+     * Used when the parse did not complete, since its metadata may still be written by an abandoned worker.
+     */
+    private String detectMimeType(File file) {
+        try {
+            MediaType mediaType = MediaType.parse(tika.detect(file));
+            return Objects.nonNull(mediaType) ? mediaType.getBaseType().toString() : UNKNOWN_MIME_TYPE;
+        } catch (IOException e) {
+            return UNKNOWN_MIME_TYPE;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private enum TaskState {
+        QUEUED, RUNNING, ABANDONED, DONE
+    }
+
+    /**
+     * Tracks whether the parse is still wanted, so one abandoned while running is counted until its worker is free.
+     */
+    private class ParseTask implements Callable<Extraction> {
+        private final File file;
+        private final AtomicReference<TaskState> state = new AtomicReference<>(TaskState.QUEUED);
+
+        private ParseTask(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public Extraction call() throws IOException, SAXException, TikaException {
+            if (!state.compareAndSet(TaskState.QUEUED, TaskState.RUNNING)) {
+                return null;
+            }
+            active.incrementAndGet();
+            try {
+                return parse(file);
+            } finally {
+                active.decrementAndGet();
+                if (state.getAndSet(TaskState.DONE) == TaskState.ABANDONED) {
+                    abandoned.decrementAndGet();
+                }
+            }
+        }
+
+        private void abandon() {
+            abandoned.incrementAndGet();
+            if (!state.compareAndSet(TaskState.RUNNING, TaskState.ABANDONED)) {
+                abandoned.decrementAndGet();
+                state.compareAndSet(TaskState.QUEUED, TaskState.DONE);
+            }
+        }
+    }
+
+    private static class InterruptibleInputStream extends FilterInputStream {
+
+        private InterruptibleInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkInterrupted();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            checkInterrupted();
+            return super.read(buffer, offset, length);
+        }
+
+        private void checkInterrupted() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException(ABANDONED);
+            }
+        }
+    }
+
+    private static class InterruptibleContentHandler extends ContentHandlerDecorator {
+
+        private InterruptibleContentHandler(ContentHandler handler) {
+            super(handler);
+        }
+
+        @Override
+        public void characters(char[] characters, int start, int length) throws SAXException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new SAXException(ABANDONED);
+            }
+            super.characters(characters, start, length);
+        }
+    }
+
+}
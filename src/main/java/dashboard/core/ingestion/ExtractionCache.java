@@ -0,0 +1,525 @@
+package dashboard.core.ingestion;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Text extracted from files, kept on disk across restarts and keyed by the SHA-256 of each file's bytes, so a rebuild
+ * of the index, e.g. after an analyzer or stopword change, only hashes and re-tokenizes unchanged files instead of
+ * parsing them again. Only complete or truncated extractions are kept; failures and timeouts are retried.
+ * <p>
+ * Entries are appended to segment files that are never modified afterwards, a new one per session. A record holds
+ * the content hash and the path it was seen at, followed for a content record by the extraction itself; a reference
+ * record only ties another path to content already stored. Opening the cache reads the record headers into memory
+ * and skips the text, which is read back from its segment on a hit. A segment is closed once it grows past 1 GB.
+ * <p>
+ * Hits only take the read lock: the text is read with positional channel reads, and every record is flushed as it is
+ * appended, so readers never touch the output stream. Appends, compaction and closing take the write lock.
+ * <p>
+ * {@link #collectGarbage()} drops the content no existing file points to any more, either because the file was
+ * removed or because it changed since, by rewriting the live records into a single segment once they make up less
+ * than half of the stored bytes. Stored bytes count every text written, including the ones a later record for the
+ * same content replaced, and the size of segments that could not be read, such as those of an older format.
+ */
+public class ExtractionCache implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ExtractionCache.class);
+    private static final String SEGMENT_FILE = "extraction-%06d.seg";
+    private static final String SEGMENT_PREFIX = "extraction-";
+    private static final String SEGMENT_GLOB = "extraction-*.seg";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int MAGIC = 0x45585443;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int HASH_BYTES = 32;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+    private static final byte CONTENT_RECORD = 1;
+    private static final byte REFERENCE_RECORD = 2;
+    private static final double MIN_LIVE_RATIO = 0.5;
+    private static final String CACHE_OPENED = "Extraction cache at %s holds %d extractions for %d files, %d bytes.";
+    private static final String SEGMENT_SKIPPED = "Skipping unreadable extraction cache segment %s: %s";
+    private static final String SEGMENT_TRUNCATED = "Extraction cache segment %s ends with an incomplete record.";
+    private static final String CACHE_COMPACTED =
+            "Extraction cache compacted: %d extractions kept, %d dropped, %d bytes reclaimed.";
+    private static final String HASH_ERROR = "Could not hash %s, extracting it without the cache: %s";
+    private static final String READ_ERROR = "Could not read the cached extraction of %s: %s";
+    private static final String WRITE_ERROR = "Could not write the extraction of %s to the cache: %s";
+
+    private final Path directory;
+    private final Map<ByteBuffer, CachedExtraction> extractions = new HashMap<>();
+    private final Map<String, ByteBuffer> hashesByPath = new HashMap<>();
+    private final Map<Integer, FileChannel> segments = new TreeMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long storedBytes;
+    private int activeSegment;
+    private DataOutputStream activeOutput;
+
+    private ExtractionCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * A cache that stores nothing and extracts every file.
+     */
+    public static ExtractionCache disabled() {
+        return new ExtractionCache(null);
+    }
+
+    public static ExtractionCache open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ExtractionCache cache = new ExtractionCache(directory);
+        cache.loadSegments();
+        LOGGER.info(String.format(CACHE_OPENED, directory, cache.extractions.size(), cache.hashesByPath.size(),
+                cache.storedBytes));
+        return cache;
+    }
+
+    public boolean isEnabled() {
+        return Objects.nonNull(directory);
+    }
+
+    /**
+     * Returns the cached extraction of the file contents, or runs the extractor and caches its result. The
+     * extraction runs outside the cache lock, so workers extracting different files do not wait for one another.
+     */
+    public ContentExtractor.Extraction extract(File file, int maxChars,
+                                               Function<File, ContentExtractor.Extraction> extractor) {
+        if (!isEnabled()) {
+            return extractor.apply(file);
+        }
+
+        ByteBuffer hash;
+        try {
+            hash = hash(file);
+        } catch (IOException e) {
+            LOGGER.warn(String.format(HASH_ERROR, file.getAbsolutePath(), e));
+            return extractor.apply(file);
+        }
+
+        String path = file.getAbsolutePath();
+        ContentExtractor.Extraction cached = get(path, hash, maxChars);
+        if (Objects.nonNull(cached)) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        ContentExtractor.Extraction extraction = extractor.apply(file);
+        if (extraction.getStatus() == ContentExtractor.Status.EXTRACTED
+                || extraction.getStatus() == ContentExtractor.Status.TRUNCATED) {
+            put(path, hash, maxChars, extraction);
+        }
+        return extraction;
+    }
+
+    private ContentExtractor.Extraction get(String path, ByteBuffer hash, int maxChars) {
+        CachedExtraction cached;
+        String text;
+        boolean newPath;
+        lock.readLock().lock();
+        try {
+            cached = extractions.get(hash);
+            if (Objects.isNull(cached) || !cached.isValidFor(maxChars)) {
+                return null;
+            }
+            text = readText(cached);
+            newPath = !hash.equals(hashesByPath.get(path));
+        } catch (IOException e) {
+            LOGGER.warn(String.format(READ_ERROR, path, e));
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (newPath) {
+            append(REFERENCE_RECORD, hash, path, null);
+        }
+        return new ContentExtractor.Extraction(text, cached.mimeType,
+                cached.truncated ? ContentExtractor.Status.TRUNCATED : ContentExtractor.Status.EXTRACTED, null);
+    }
+
+    private void put(String path, ByteBuffer hash, int maxChars, ContentExtractor.Extraction extraction) {
+        append(CONTENT_RECORD, hash, path, new CachedExtraction(extraction.getMimeType(),
+                extraction.getStatus() == ContentExtractor.Status.TRUNCATED, maxChars, extraction.getText().length(),
+                extraction.getText().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void append(byte type, ByteBuffer hash, String path, CachedExtraction cached) {
+        lock.writeLock().lock();
+        try {
+            appendRecord(type, hash, path, cached);
+        } catch (IOException e) {
+            LOGGER.warn(String.format(WRITE_ERROR, path, e));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Drops the extractions no existing file points to, once they take up more than half of the stored bytes.
+     */
+    public void collectGarbage() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            collectGarbageLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void collectGarbageLocked() throws IOException {
+        Map<String, ByteBuffer> livePaths = new HashMap<>();
+        Set<ByteBuffer> liveHashes = new HashSet<>();
+        long liveBytes = 0;
+        for (Map.Entry<String, ByteBuffer> entry : hashesByPath.entrySet()) {
+            CachedExtraction cached = extractions.get(entry.getValue());
+            if (Objects.nonNull(cached) && new File(entry.getKey()).exists()) {
+                livePaths.put(entry.getKey(), entry.getValue());
+                if (liveHashes.add(entry.getValue())) {
+                    liveBytes += cached.length;
+                }
+            }
+        }
+        if (liveBytes >= storedBytes * MIN_LIVE_RATIO) {
+            return;
+        }
+
+        compact(livePaths, liveHashes);
+    }
+
+    /**
+     * Copies the live records into a fresh segment, then deletes every older one. Until the old segments are gone
+     * both copies are readable, so a crash in between only leaves duplicates for the next compaction.
+     */
+    private void compact(Map<String, ByteBuffer> livePaths, Set<ByteBuffer> liveHashes) throws IOException {
+        int droppedExtractions = extractions.size() - liveHashes.size();
+        long previousBytes = storedBytes;
+        Map<ByteBuffer, CachedExtraction> liveExtractions = new HashMap<>();
+        for (ByteBuffer hash : liveHashes) {
+            CachedExtraction cached = extractions.get(hash);
+            liveExtractions.put(hash, new CachedExtraction(cached.mimeType, cached.truncated, cached.maxChars,
+                    cached.chars, readBytes(cached)));
+        }
+        List<Integer> obsoleteSegments = new ArrayList<>(segments.keySet());
+
+        activeOutput.close();
+        extractions.clear();
+        hashesByPath.clear();
+        storedBytes = 0;
+        startSegment(activeSegment + 1);
+
+        for (Map.Entry<String, ByteBuffer> entry : livePaths.entrySet()) {
+            CachedExtraction cached = liveExtractions.remove(entry.getValue());
+            if (Objects.nonNull(cached)) {
+                appendRecord(CONTENT_RECORD, entry.getValue(), entry.getKey(), cached);
+            } else {
+                appendRecord(REFERENCE_RECORD, entry.getValue(), entry.getKey(), null);
+            }
+        }
+
+        for (Integer segment : obsoleteSegments) {
+            segments.remove(segment).close();
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        LOGGER.info(String.format(CACHE_COMPACTED, liveHashes.size(), droppedExtractions,
+                previousBytes - storedBytes));
+    }
+
+    private void loadSegments() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.indexOf('.'))));
+            }
+        }
+        numbers.sort(Integer::compare);
+
+        for (Integer number : numbers) {
+            try {
+                loadSegment(number);
+            } catch (IOException e) {
+                LOGGER.warn(String.format(SEGMENT_SKIPPED, segmentPath(number), e));
+            }
+        }
+        startSegment(numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1) + 1);
+    }
+
+    /**
+     * Reads the record headers of a segment, skipping over the text. Later records win over earlier ones, and a
+     * record cut short by a crash ends the segment. Unreadable segments stay registered and count as garbage, so
+     * compaction removes them.
+     */
+    private void loadSegment(int number) throws IOException {
+        Path path = segmentPath(number);
+        long length = Files.size(path);
+        segments.put(number, FileChannel.open(path, StandardOpenOption.READ));
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path),
+                READ_BUFFER_BYTES))) {
+            if (length < HEADER_BYTES || input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                storedBytes += length;
+                throw new IOException("not an extraction cache segment of version " + FORMAT_VERSION);
+            }
+
+            long position = HEADER_BYTES;
+            try {
+                while (position < length) {
+                    position += readRecord(input, number, position);
+                }
+            } catch (EOFException e) {
+                LOGGER.warn(String.format(SEGMENT_TRUNCATED, path));
+            }
+        }
+    }
+
+    private long readRecord(DataInputStream input, int segment, long position) throws IOException {
+        byte type = input.readByte();
+        byte[] hashBytes = new byte[HASH_BYTES];
+        input.readFully(hashBytes);
+        ByteBuffer hash = ByteBuffer.wrap(hashBytes);
+        byte[] path = readString(input);
+        long recordLength = 1 + HASH_BYTES + 4 + path.length;
+
+        if (type == CONTENT_RECORD) {
+            byte[] mimeType = readString(input);
+            boolean truncated = input.readBoolean();
+            int maxChars = input.readInt();
+            int chars = input.readInt();
+            int textLength = readLength(input);
+            recordLength += 4 + mimeType.length + 1 + 4 + 4 + 4;
+            skipFully(input, textLength);
+
+            extractions.put(hash, new CachedExtraction(new String(mimeType, StandardCharsets.UTF_8), truncated,
+                    maxChars, chars, segment, position + recordLength, textLength));
+            storedBytes += textLength;
+            recordLength += textLength;
+        } else if (type != REFERENCE_RECORD) {
+            throw new IOException("unknown record type " + type);
+        }
+        hashesByPath.put(new String(path, StandardCharsets.UTF_8), hash);
+        return recordLength;
+    }
+
+    private void appendRecord(byte type, ByteBuffer hash, String path, CachedExtraction cached)
+            throws IOException {
+        activeOutput.writeByte(type);
+        activeOutput.write(hash.array());
+        writeString(path);
+        if (type == CONTENT_RECORD) {
+            writeString(cached.mimeType);
+            activeOutput.writeBoolean(cached.truncated);
+            activeOutput.writeInt(cached.maxChars);
+            activeOutput.writeInt(cached.chars);
+            activeOutput.writeInt(cached.text.length);
+            long textPosition = activeOutput.size();
+            activeOutput.write(cached.text);
+
+            extractions.put(hash, new CachedExtraction(cached.mimeType, cached.truncated, cached.maxChars,
+                    cached.chars, activeSegment, textPosition, cached.text.length));
+            storedBytes += cached.text.length;
+        }
+        hashesByPath.put(path, hash);
+        activeOutput.flush();
+
+        if (activeOutput.size() >= MAX_SEGMENT_BYTES) {
+            activeOutput.close();
+            startSegment(activeSegment + 1);
+        }
+    }
+
+    /**
+     * Strings are stored as their UTF-8 bytes behind a four byte length, so record lengths follow from what is read
+     * and paths of any length fit.
+     */
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        activeOutput.writeInt(bytes.length);
+        activeOutput.write(bytes);
+    }
+
+    private static byte[] readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[readLength(input)];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static int readLength(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("negative length " + length);
+        }
+        return length;
+    }
+
+    private static void skipFully(InputStream input, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private void startSegment(int number) throws IOException {
+        Path path = segmentPath(number);
+        activeSegment = number;
+        activeOutput = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        activeOutput.writeInt(MAGIC);
+        activeOutput.writeInt(FORMAT_VERSION);
+        activeOutput.flush();
+        segments.put(number, FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    private String readText(CachedExtraction cached) throws IOException {
+        return new String(readBytes(cached), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(CachedExtraction cached) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(cached.length);
+        FileChannel channel = segments.get(cached.segment);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, cached.position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.array();
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format(SEGMENT_FILE, number));
+    }
+
+    private static ByteBuffer hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[READ_BUFFER_BYTES];
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            boolean activeSegmentEmpty = activeOutput.size() == HEADER_BYTES;
+            activeOutput.close();
+            for (FileChannel channel : segments.values()) {
+                channel.close();
+            }
+            segments.clear();
+            if (activeSegmentEmpty) {
+                Files.deleteIfExists(segmentPath(activeSegment));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static class CachedExtraction {
+        private final String mimeType;
+        private final boolean truncated;
+        private final int maxChars;
+        private final int chars;
+        private final int segment;
+        private final long position;
+        private final int length;
+        private final byte[] text;
+
+        private CachedExtraction(String mimeType, boolean truncated, int maxChars, int chars, int segment,
+                                 long position, int length) {
+            this.mimeType = mimeType;
+            this.truncated = truncated;
+            this.maxChars = maxChars;
+            this.chars = chars;
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.text = null;
+        }
+
+        private CachedExtraction(String mimeType, boolean truncated, int maxChars, int chars, byte[] text) {
+            this.mimeType = mimeType;
+            this.truncated = truncated;
+            this.maxChars = maxChars;
+            this.chars = chars;
+            this.segment = -1;
+            this.position = -1;
+            this.length = text.length;
+            this.text = text;
+        }
+
+        /**
+         * A truncated extraction only holds for the same character limit; a complete one for any limit its text, in
+         * characters, fits in.
+         */
+        private boolean isValidFor(int limit) {
+            if (truncated) {
+                return maxChars == limit;
+            }
+            return limit <= 0 || chars <= limit || maxChars == limit;
+        }
+    }
+
+}
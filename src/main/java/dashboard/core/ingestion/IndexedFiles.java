@@ -0,0 +1,130 @@
+package dashboard.core.ingestion;
+
+import dashboard.utils.Constants;
+import dashboard.utils.SelectiveFieldsVisitor;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of the files already present in the index, keyed on {@link Constants#PATH}, used to skip unchanged files
+ * and to find the ones removed from disk since the last run.
+ */
+public class IndexedFiles {
+    private static final Set<String> FIELDS_TO_LOAD =
+            new HashSet<>(Arrays.asList(Constants.PATH, Constants.LAST_MODIFIED, Constants.SIZE));
+
+    private final Map<String, FileStamp> indexedStamps;
+    private final Set<String> seenPaths = ConcurrentHashMap.newKeySet();
+
+    private IndexedFiles(Map<String, FileStamp> indexedStamps) {
+        this.indexedStamps = indexedStamps;
+    }
+
+    public static IndexedFiles empty() {
+        return new IndexedFiles(new ConcurrentHashMap<>());
+    }
+
+    public static IndexedFiles load(IndexWriter indexWriter) throws IOException {
+        Map<String, FileStamp> stamps = new ConcurrentHashMap<>();
+
+        try (DirectoryReader reader = DirectoryReader.open(indexWriter)) {
+            for (LeafReaderContext leaf : reader.leaves()) {
+                LeafReader leafReader = leaf.reader();
+                Bits liveDocs = leafReader.getLiveDocs();
+
+                for (int docId = 0; docId < leafReader.maxDoc(); docId++) {
+                    if (Objects.isNull(liveDocs) || liveDocs.get(docId)) {
+                        Document document = SelectiveFieldsVisitor.load(leafReader, docId, FIELDS_TO_LOAD);
+                        String path = document.get(Constants.PATH);
+                        if (Objects.nonNull(path)) {
+                            stamps.put(path, readStamp(document));
+                        }
+                    }
+                }
+            }
+        }
+
+        return new IndexedFiles(stamps);
+    }
+
+    private static FileStamp readStamp(Document document) {
+        IndexableField lastModified = document.getField(Constants.LAST_MODIFIED);
+        IndexableField size = document.getField(Constants.SIZE);
+
+        if (Objects.isNull(lastModified) || Objects.isNull(size)) {
+            return FileStamp.UNKNOWN;
+        }
+        return new FileStamp(lastModified.numericValue().longValue(), size.numericValue().longValue());
+    }
+
+    /**
+     * Marks the file as still present on disk and tells whether it is missing from the index or differs from the
+     * indexed version.
+     */
+    public boolean isChanged(File file) {
+        String path = file.getAbsolutePath();
+        seenPaths.add(path);
+
+        return !new FileStamp(file.lastModified(), file.length()).equals(indexedStamps.get(path));
+    }
+
+    public int getIndexedCount() {
+        return indexedStamps.size();
+    }
+
+    /**
+     * Paths present in the index that were not seen by {@link #isChanged(File)}.
+     */
+    public List<String> getRemovedPaths() {
+        return indexedStamps.keySet().stream()
+                .filter(path -> !seenPaths.contains(path))
+                .collect(Collectors.toList());
+    }
+
+    private static class FileStamp {
+        /* Documents indexed before the stamps were stored never match a file on disk. */
+        private static final FileStamp UNKNOWN = new FileStamp(-1, -1);
+
+        private final long lastModified;
+        private final long size;
+
+        private FileStamp(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp stamp = (FileStamp) other;
+            return lastModified == stamp.lastModified && size == stamp.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, size);
+        }
+    }
+
+}
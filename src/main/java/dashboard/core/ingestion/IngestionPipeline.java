@@ -0,0 +1,208 @@
+package dashboard.core.ingestion;
+
+import dashboard.utils.Constants;
+import dashboard.utils.NamedThreadFactory;
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Three stage ingestion pipeline: file discovery on the calling thread, a pool of extraction workers turning files
+ * into documents and a pool of writers handing them to the index. Stages are connected through bounded queues, so a
+ * slow stage blocks the one feeding it instead of buffering the whole corpus in memory.
+ */
+public class IngestionPipeline {
+    private static final Logger LOGGER = Logger.getLogger(IngestionPipeline.class);
+    private static final String STAGE_THROUGHPUT = "%s stage: %d items in %d ms (%.1f items/s).";
+    private static final String PIPELINE_STARTED =
+            "Starting ingestion pipeline with %d extraction workers and %d writers.";
+    private static final String PIPELINE_PROGRESS = "Ingestion progress: %d discovered, %d extracted, %d written.";
+    private static final String PIPELINE_INTERRUPTED = "Ingestion pipeline was interrupted.";
+    private static final String EXTRACTION_ERROR = "Error while extracting the file %s: %s";
+    private static final String WRITE_ERROR = "Error while writing the document %s: %s";
+    private static final String WRITE_FAILED = "Ingestion pipeline failed to write documents.";
+    private static final String DISCOVERY = "Discovery";
+    private static final String EXTRACTION = "Extraction";
+    private static final String WRITING = "Writing";
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final File END_OF_FILES = new File("");
+    private static final Document END_OF_DOCUMENTS = new Document();
+
+    private final int extractionWorkers;
+    private final int writerWorkers;
+    private final BlockingQueue<File> files;
+    private final BlockingQueue<Document> documents;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private final StageStats discoveryStats = new StageStats(DISCOVERY);
+    private final StageStats extractionStats = new StageStats(EXTRACTION);
+    private final StageStats writingStats = new StageStats(WRITING);
+
+    public IngestionPipeline(int extractionWorkers, int writerWorkers, int queueCapacity) {
+        this.extractionWorkers = extractionWorkers;
+        this.writerWorkers = writerWorkers;
+        this.files = new ArrayBlockingQueue<>(queueCapacity);
+        this.documents = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Walks {@code root} recursively and feeds every file accepted by {@code filter} through {@code extractor} and
+     * then {@code writer}. The extractor may return {@code null} to drop a file. Blocks until every stage is drained.
+     */
+    public void run(File root, Predicate<File> filter, Function<File, Document> extractor, DocumentWriter writer)
+            throws IOException {
+        LOGGER.info(String.format(PIPELINE_STARTED, extractionWorkers, writerWorkers));
+
+        ExecutorService extractionPool = Executors.newFixedThreadPool(extractionWorkers,
+                new NamedThreadFactory("ingest-extract"));
+        ExecutorService writerPool = Executors.newFixedThreadPool(writerWorkers,
+                new NamedThreadFactory("ingest-write"));
+        long start = System.nanoTime();
+
+        for (int i = 0; i < extractionWorkers; i++) {
+            extractionPool.execute(() -> extract(extractor));
+        }
+        for (int i = 0; i < writerWorkers; i++) {
+            writerPool.execute(() -> write(writer));
+        }
+
+        try {
+            discover(root, filter);
+            discoveryStats.finish();
+
+            for (int i = 0; i < extractionWorkers; i++) {
+                files.put(END_OF_FILES);
+            }
+            awaitTermination(extractionPool);
+            extractionStats.finish();
+
+            for (int i = 0; i < writerWorkers; i++) {
+                documents.put(END_OF_DOCUMENTS);
+            }
+            awaitTermination(writerPool);
+            writingStats.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            extractionPool.shutdownNow();
+            writerPool.shutdownNow();
+            throw new IOException(PIPELINE_INTERRUPTED, e);
+        }
+
+        discoveryStats.log(start);
+        extractionStats.log(start);
+        writingStats.log(start);
+
+        Exception writeFailure = failure.get();
+        if (writeFailure instanceof IOException) {
+            throw (IOException) writeFailure;
+        }
+        if (Objects.nonNull(writeFailure)) {
+            throw new IOException(WRITE_FAILED, writeFailure);
+        }
+    }
+
+    private void discover(File directory, Predicate<File> filter) throws InterruptedException {
+        File[] children = directory.listFiles();
+        if (Objects.isNull(children)) {
+            return;
+        }
+        for (File file : children) {
+            if (file.isDirectory()) {
+                discover(file, filter);
+            } else if (filter.test(file)) {
+                files.put(file);
+                discoveryStats.increment();
+            }
+        }
+    }
+
+    private void extract(Function<File, Document> extractor) {
+        try {
+            File file;
+            while ((file = files.take()) != END_OF_FILES) {
+                try {
+                    Document document = extractor.apply(file);
+                    if (Objects.nonNull(document)) {
+                        documents.put(document);
+                        extractionStats.increment();
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.error(String.format(EXTRACTION_ERROR, file.getAbsolutePath(), e));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keeps draining the queue after a failed write, so the extractors never block on a queue nobody empties; the
+     * first failure is rethrown by {@link #run} once every stage is done.
+     */
+    private void write(DocumentWriter writer) {
+        try {
+            Document document;
+            while ((document = documents.take()) != END_OF_DOCUMENTS) {
+                try {
+                    writer.write(document);
+                    if (writingStats.increment() % PROGRESS_INTERVAL == 0) {
+                        LOGGER.info(String.format(PIPELINE_PROGRESS, discoveryStats.count.get(),
+                                extractionStats.count.get(), writingStats.count.get()));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.error(String.format(WRITE_ERROR, document.get(Constants.PATH), e));
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitTermination(ExecutorService executorService) throws InterruptedException {
+        executorService.shutdown();
+        executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @FunctionalInterface
+    public interface DocumentWriter {
+        void write(Document document) throws IOException;
+    }
+
+    private static class StageStats {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private volatile long end;
+
+        private StageStats(String name) {
+            this.name = name;
+        }
+
+        private long increment() {
+            return count.incrementAndGet();
+        }
+
+        private void finish() {
+            end = System.nanoTime();
+        }
+
+        private void log(long start) {
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - start));
+            LOGGER.info(String.format(STAGE_THROUGHPUT, name, count.get(), elapsedMillis,
+                    count.get() * 1000.0 / elapsedMillis));
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package dashboard.resource;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The score of a hit together with the breakdown of every query term over that hit.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HitExplanation {
+
+    private String fileName;
+    private float score;
+    private List<TermExplanation> terms;
+
+}
@@ -0,0 +1,23 @@
+package dashboard.resource;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A single query with its paging parameters. A missing page size falls back to the default page size and a missing
+ * cursor means the first page. Explained requests also get the TF-IDF breakdown of every hit.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchRequest {
+
+    private String query;
+    private Integer pageSize;
+    private String cursor;
+    private boolean explain;
+
+}
@@ -1,5 +1,6 @@
 package dashboard.resource;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -18,8 +19,35 @@ public class SearchResult {
     private Map<String, String> searchDetails = new HashMap<>();
     private List<Map<String, String>> searchResults = new ArrayList<>();
 
+    /**
+     * Filled only for explained searches, one entry per search result and in the same order.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<HitExplanation> explanations = new ArrayList<>();
+
     public void addSearchDetail(String key, String value) {
         this.searchDetails.put(key, value);
     }
 
+    /**
+     * Copies down to every hit and explanation, so changing the copy never changes the original, such as a result
+     * held by the result cache.
+     */
+    public SearchResult copy() {
+        SearchResult copy = new SearchResult();
+        copy.searchDetails.putAll(this.searchDetails);
+        for (Map<String, String> searchResult : this.searchResults) {
+            copy.searchResults.add(new HashMap<>(searchResult));
+        }
+        for (HitExplanation explanation : this.explanations) {
+            List<TermExplanation> terms = new ArrayList<>();
+            for (TermExplanation term : explanation.getTerms()) {
+                terms.add(new TermExplanation(term.getWord(), term.getTerm(), term.getFrequency(), term.getTf(),
+                        term.getIdf(), term.getTfIdf()));
+            }
+            copy.explanations.add(new HitExplanation(explanation.getFileName(), explanation.getScore(), terms));
+        }
+        return copy;
+    }
+
 }
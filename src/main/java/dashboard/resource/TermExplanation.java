@@ -0,0 +1,24 @@
+package dashboard.resource;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * How much one query word contributes to a hit: its frequency in the document and the resulting TF, IDF and TF-IDF.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TermExplanation {
+
+    private String word;
+    private String term;
+    private int frequency;
+    private double tf;
+    private double idf;
+    private double tfIdf;
+
+}
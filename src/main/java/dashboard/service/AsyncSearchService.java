@@ -0,0 +1,92 @@
+package dashboard.service;
+
+import dashboard.utils.NamedThreadFactory;
+import lombok.Getter;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.Objects;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs search requests off the servlet container threads on a bounded pool, so blocked searches do not exhaust the
+ * container's workers. When the pool and its queue are full, the returned future fails with a
+ * {@link SearchRejectedException}, answered with a 503, instead of piling up more work. When async search is disabled
+ * no pool is created and searches run on the calling thread.
+ */
+@Service
+public class AsyncSearchService {
+    private static final Logger LOGGER = Logger.getLogger(AsyncSearchService.class);
+    private static final String ASYNC_MODE = "Async search %s with %d threads and a queue of %d requests.";
+    private static final String ENABLED = "enabled";
+    private static final String DISABLED = "disabled";
+    private static final String ASYNC_THREAD_NAME = "search-async";
+    private static final String SEARCH_REJECTED = "Search pool of %d threads and its queue of %d requests are full.";
+
+    @Getter
+    @Value("${search.async.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.async.threads:0}")
+    private int threads;
+
+    @Value("${search.async.queue.capacity:200}")
+    private int queueCapacity;
+
+    @Getter
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    private void createExecutor() {
+        int poolSize = threads > 0 ? threads : 2 * Runtime.getRuntime().availableProcessors();
+        if (enabled) {
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory(ASYNC_THREAD_NAME),
+                    (task, pool) -> {
+                        throw new SearchRejectedException(String.format(SEARCH_REJECTED, poolSize, queueCapacity));
+                    });
+        }
+
+        LOGGER.info(String.format(ASYNC_MODE, enabled ? ENABLED : DISABLED, poolSize, queueCapacity));
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (Objects.nonNull(executor)) {
+            executor.shutdown();
+        }
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public static class SearchRejectedException extends RejectedExecutionException {
+
+        public SearchRejectedException(String message) {
+            super(message);
+        }
+    }
+
+}
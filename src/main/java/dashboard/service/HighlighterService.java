@@ -1,30 +1,46 @@
 package dashboard.service;
 
-import dashboard.core.analyzer.RomanianAnalyzerWithASCIIFolding;
 import dashboard.resource.Fragment;
 import dashboard.resource.Token;
 import dashboard.utils.Constants;
+import dashboard.utils.LruCache;
+import dashboard.utils.SelectiveFieldsVisitor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Ionut Emanuel Mihailescu on 5/5/18.
@@ -41,49 +57,233 @@ public class HighlighterService {
     private static final String ELLIPSIS = " ... ";
     private static final String COLON = ":";
     private static final String END_OF_LINE = "\n";
+    private static final long FRAGMENT_ENTRY_OVERHEAD_BYTES = 128;
+    private static final String HIGHLIGHT_METRIC = "search.highlight";
+    private static final String TERM_VECTORS_METRIC = "search.term.vectors";
+    private static final String STORED_CONTENT_METRIC = "search.stored.content";
+    private static final Set<String> CONTENT_FIELD = Collections.singleton(Constants.CONTENT);
+
+    @Autowired
+    private Analyzer analyzer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.fragments.max.bytes:16777216}")
+    private long fragmentCacheMaxBytes;
+
+    private LruCache<FragmentKey, String> fragmentCache;
+
+    private Timer highlightTimer;
+
+    private Timer termVectorsTimer;
+
+    private Timer storedContentTimer;
+
+    @PostConstruct
+    private void createFragmentCache() {
+        fragmentCache = new LruCache<>(fragmentCacheMaxBytes,
+                highlighted -> FRAGMENT_ENTRY_OVERHEAD_BYTES + (long) Character.BYTES * highlighted.length());
+
+        highlightTimer = Timer.builder(HIGHLIGHT_METRIC).description("Highlighting time per hit, cache hits included")
+                .register(meterRegistry);
+        termVectorsTimer = Timer.builder(TERM_VECTORS_METRIC).description("Term vector read time per hit")
+                .register(meterRegistry);
+        storedContentTimer = Timer.builder(STORED_CONTENT_METRIC).description("Stored content load time per hit")
+                .register(meterRegistry);
+    }
 
     public String getHighlightedFragments(Document document, String searchQuery) throws IOException {
+        return getHighlightedFragments(null, -1, document, searchQuery);
+    }
+
+    /**
+     * Highlights a hit straight from the index, reading its stored content only when the fragments are not cached and
+     * its term vector has at least one match.
+     */
+    public String getHighlightedFragments(IndexReader indexReader, int docId, String searchQuery) throws IOException {
+        return getHighlightedFragments(indexReader, docId, null, searchQuery);
+    }
+
+    /**
+     * Highlights the document using the match offsets stored in its term vector when the index has them, and falls
+     * back to analyzing the stored content otherwise. Without a document, the content is loaded from the reader.
+     */
+    public String getHighlightedFragments(IndexReader indexReader, int docId, Document document, String searchQuery)
+            throws IOException {
+        long startedAt = System.nanoTime();
+        try {
+            Query query = initQuery(searchQuery);
+            Set<String> clauses = extractClauses(query);
+
+            FragmentKey fragmentKey = getFragmentKey(indexReader, docId, clauses);
+            if (Objects.nonNull(fragmentKey)) {
+                String cachedResult = fragmentCache.get(fragmentKey);
+                if (Objects.nonNull(cachedResult)) {
+                    return cachedResult;
+                }
+            }
+
+            String result = highlight(indexReader, docId, document, clauses);
+
+            if (Objects.nonNull(fragmentKey)) {
+                fragmentCache.put(fragmentKey, result);
+            }
+            return result;
+        } finally {
+            highlightTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String highlight(IndexReader indexReader, int docId, Document document, Set<String> clauses)
+            throws IOException {
         String result = SPACE_STRING;
 
-        Query query = initQuery(searchQuery);
-        List<String> clauses = extractClauses(query);
         List<Fragment> fragments = new ArrayList<>();
+        Map<String, String> analyzedWords = new HashMap<>();
 
-        if (clauses.size() > 0) {
-            String content = document.get(Constants.CONTENT);
-            content = content.replaceAll(END_OF_LINE, SPACE_STRING);
+        List<Token> matches = clauses.size() > 0 && Objects.nonNull(indexReader)
+                ? readMatchOffsets(indexReader, docId, clauses) : null;
 
-            TokenStream tokenStream = new RomanianAnalyzerWithASCIIFolding()
-                    .tokenStream(null, new StringReader(content));
-            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
-            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+        if (clauses.size() > 0 && (Objects.isNull(matches) || !matches.isEmpty())) {
+            String content = loadContent(indexReader, docId, document);
+            content = content.replace(END_OF_LINE, SPACE_STRING);
 
-            tokenStream.reset();
-            while (tokenStream.incrementToken()) {
-                String term = charTermAttribute.toString();
+            if (Objects.isNull(matches)) {
+                matches = findMatches(content, clauses);
+            }
 
-                if (clauses.contains(term)) {
-                    fragments.add(buildFragment(offsetAttribute, content, clauses, term));
-                }
+            for (Token match : matches) {
+                fragments.add(buildFragment(match, content, clauses, analyzedWords));
             }
-            endAndCloseToken(tokenStream);
 
             if (fragments.size() > 0) {
-                result = buildResultFromBestFragments(mergeFragments(fragments, content), clauses);
+                result = buildResultFromBestFragments(mergeFragments(fragments, content), clauses, analyzedWords);
             }
         }
 
         return result;
     }
 
-    private String buildResultFromBestFragments(List<Fragment> fragments, List<String> clauses) throws IOException {
+    private String loadContent(IndexReader indexReader, int docId, Document document) throws IOException {
+        if (Objects.nonNull(document)) {
+            return document.get(Constants.CONTENT);
+        }
+
+        long startedAt = System.nanoTime();
+        String content = SelectiveFieldsVisitor.load(indexReader, docId, CONTENT_FIELD).get(Constants.CONTENT);
+        storedContentTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return content;
+    }
+
+    /**
+     * Identifies a hit by the segment it lives in rather than by the top level reader, so cached fragments survive
+     * reader refreshes and are only dropped, by eviction, once the document is rewritten into another segment.
+     */
+    private FragmentKey getFragmentKey(IndexReader indexReader, int docId, Set<String> clauses) {
+        if (Objects.isNull(indexReader) || !fragmentCache.isEnabled() || clauses.isEmpty()) {
+            return null;
+        }
+
+        List<LeafReaderContext> leaves = indexReader.leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+        if (Objects.isNull(cacheHelper)) {
+            return null;
+        }
+
+        return new FragmentKey(cacheHelper.getKey(), docId - leaf.docBase, clauses);
+    }
+
+    /**
+     * Collects the content tokens matching a clause. The stream is closed before any fragment is built, because the
+     * shared analyzer hands out a single token stream per thread.
+     */
+    private List<Token> findMatches(String content, Set<String> clauses) throws IOException {
+        List<Token> matches = new ArrayList<>();
+
+        TokenStream tokenStream = analyzer.tokenStream(Constants.CONTENT, content);
+        OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+        CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+
+        tokenStream.reset();
+        while (tokenStream.incrementToken()) {
+            String term = charTermAttribute.toString();
+
+            if (clauses.contains(term)) {
+                matches.add(new Token(term, offsetAttribute.startOffset(), offsetAttribute.endOffset(),
+                        matches.size()));
+            }
+        }
+        endAndCloseToken(tokenStream);
+
+        return matches;
+    }
+
+    /**
+     * Reads the offsets of every clause occurrence straight from the document's term vector, or returns {@code null}
+     * when the document was indexed without offsets.
+     */
+    private List<Token> readMatchOffsets(IndexReader indexReader, int docId, Set<String> clauses) throws IOException {
+        long startedAt = System.nanoTime();
+        Terms terms = indexReader.getTermVector(docId, Constants.CONTENT);
+        if (Objects.isNull(terms) || !terms.hasOffsets()) {
+            return null;
+        }
+
+        List<Token> matches = new ArrayList<>();
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+
+        for (String clause : clauses) {
+            if (termsEnum.seekExact(new BytesRef(clause))) {
+                postings = termsEnum.postings(postings, PostingsEnum.OFFSETS);
+                postings.nextDoc();
+                for (int i = 0; i < postings.freq(); i++) {
+                    int position = postings.nextPosition();
+                    matches.add(new Token(clause, postings.startOffset(), postings.endOffset(), position));
+                }
+            }
+        }
+        termVectorsTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        matches.sort(Comparator.comparingInt(Token::getStartOffset));
+
+        return matches;
+    }
+
+    /**
+     * Returns the term a single word is indexed under, or an empty string for stopwords. Results are memoized for the
+     * current request, since the same words keep coming back in overlapping fragment windows.
+     */
+    private String analyzeWord(String word, Map<String, String> analyzedWords) throws IOException {
+        String term = analyzedWords.get(word);
+
+        if (Objects.isNull(term)) {
+            term = EMPTY_STRING;
+            TokenStream tokenStream = analyzer.tokenStream(Constants.CONTENT, word);
+            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+
+            tokenStream.reset();
+            if (tokenStream.incrementToken()) {
+                term = charTermAttribute.toString();
+            }
+            endAndCloseToken(tokenStream);
+
+            analyzedWords.put(word, term);
+        }
+
+        return term;
+    }
+
+    private String buildResultFromBestFragments(List<Fragment> fragments, Set<String> clauses,
+                                                Map<String, String> analyzedWords) throws IOException {
         StringBuilder finalResult = new StringBuilder();
         Set<String> checkedTerms = new HashSet<>();
         boolean first = true;
         List<Fragment> finalFragments = new ArrayList<>();
 
         for (Fragment fragment : fragments) {
-            Map<String, Integer> results = getHighlightedBestTokens(fragment, clauses);
+            Map<String, Integer> results = getHighlightedBestTokens(fragment, clauses, analyzedWords);
 
             StringBuilder fragmentBuilder = new StringBuilder();
             Boolean existTerm = false;
@@ -94,12 +294,7 @@ public class HighlighterService {
             int position = 0;
             int newStart = 0;
             for (String word : fragment.getText().split(SPACE_STRING)) {
-                TokenStream tokenStream = new RomanianAnalyzerWithASCIIFolding().tokenStream(null,
-                        new StringReader(word));
-                CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
-
-                resetAndIncrementToken(tokenStream);
-                String term = charTermAttribute.toString();
+                String term = analyzeWord(word, analyzedWords);
                 if (clauses.contains(term) && !checkedTerms.contains(term) && results.get(term).equals(position)) {
                     checkedTerms.add(term);
                     existTerm = true;
@@ -125,7 +320,6 @@ public class HighlighterService {
                                 .append(SPACE_STRING);
                     }
                 }
-                endAndCloseToken(tokenStream);
                 position++;
             }
 
@@ -162,8 +356,13 @@ public class HighlighterService {
         return START_BOLD + word + END_BOLD;
     }
 
+    /**
+     * Merges runs of overlapping fragments in one pass. A merged fragment collects the terms of the whole run and
+     * takes its text from the content once the run is complete, rather than at every step of the run.
+     */
     private List<Fragment> mergeFragments(List<Fragment> fragments, String content) {
         List<Fragment> mergedFragments = new ArrayList<>();
+        Set<Fragment> openRuns = new HashSet<>();
 
         int start = 0;
         int end = 0;
@@ -172,14 +371,25 @@ public class HighlighterService {
                 start = Math.min(start, fragment.getStartOffset());
                 end = Math.max(end, fragment.getEndOffset());
 
-                Fragment mergedFragment = createAndEnrichFragment(content, start, end, fragment);
-
-                if (!mergedFragments.isEmpty()) {
-                    Fragment lastAddedFragment = mergedFragments.get(mergedFragments.size() - 1);
-                    mergedFragment.getTerms().addAll(lastAddedFragment.getTerms());
-                    mergedFragments.remove(lastAddedFragment);
+                Fragment mergedFragment = mergedFragments.isEmpty() ? null
+                        : mergedFragments.get(mergedFragments.size() - 1);
+                if (!openRuns.contains(mergedFragment)) {
+                    Fragment lastAddedFragment = mergedFragment;
+                    mergedFragment = new Fragment();
+                    mergedFragment.setContentLength(content.length());
+                    mergedFragment.getTerms().addAll(fragment.getTerms());
+                    if (Objects.nonNull(lastAddedFragment)) {
+                        mergedFragment.getTerms().addAll(lastAddedFragment.getTerms());
+                        mergedFragments.set(mergedFragments.size() - 1, mergedFragment);
+                    } else {
+                        mergedFragments.add(mergedFragment);
+                    }
+                    openRuns.add(mergedFragment);
+                } else {
+                    mergedFragment.getTerms().addAll(fragment.getTerms());
                 }
-                mergedFragments.add(mergedFragment);
+                mergedFragment.setStartOffset(start);
+                mergedFragment.setEndOffset(end);
             } else {
                 start = fragment.getStartOffset();
                 end = fragment.getEndOffset();
@@ -188,41 +398,41 @@ public class HighlighterService {
                 mergedFragments.add(fragment);
             }
         }
-        return analyseBestFragments(mergedFragments);
-    }
 
-    private Fragment createAndEnrichFragment(String content, int startOffset, int endOffset, Fragment fragment) {
-        Fragment mergedFragment = new Fragment();
-        mergedFragment.setStartOffset(startOffset);
-        mergedFragment.setEndOffset(endOffset);
-        mergedFragment.setText(content.substring(startOffset, endOffset));
-        mergedFragment.setContentLength(content.length());
-        mergedFragment.setTerms(fragment.getTerms());
-        return mergedFragment;
+        for (Fragment mergedFragment : openRuns) {
+            mergedFragment.setText(content.substring(mergedFragment.getStartOffset(), mergedFragment.getEndOffset()));
+        }
+        return analyseBestFragments(mergedFragments);
     }
 
+    /**
+     * Drops, in order, every fragment whose terms all appear in some other fragment still kept. Counting the kept
+     * fragments holding each term answers that in time linear in the number of terms instead of comparing every
+     * pair of fragments.
+     */
     private List<Fragment> analyseBestFragments(List<Fragment> fragments) {
         List<Fragment> finalFragments = new ArrayList<>();
 
-        Set<Fragment> deletedFragments = new HashSet<>();
-        for (int i = 0; i < fragments.size(); i++) {
-            Fragment fragment = fragments.get(i);
-            Set<String> fragmentTerms = new HashSet<>(fragment.getTerms());
-            Set<String> copyOfFragmentTerms = new HashSet<>(fragment.getTerms());
-
-            for (int j = 0; j < fragments.size(); j++) {
-                if (j != i && !deletedFragments.contains(fragments.get(j))) {
-                    Fragment secondTempFragments = fragments.get(j);
-                    for (String term : fragmentTerms) {
-                        if (secondTempFragments.getTerms().contains(term)) {
-                            copyOfFragmentTerms.remove(term);
-                        }
-                    }
+        Map<String, Integer> fragmentsPerTerm = new HashMap<>();
+        for (Fragment fragment : fragments) {
+            for (String term : fragment.getTerms()) {
+                fragmentsPerTerm.merge(term, 1, Integer::sum);
+            }
+        }
+
+        for (Fragment fragment : fragments) {
+            boolean covered = true;
+            for (String term : fragment.getTerms()) {
+                if (fragmentsPerTerm.get(term) < 2) {
+                    covered = false;
+                    break;
                 }
             }
 
-            if (copyOfFragmentTerms.isEmpty()) {
-                deletedFragments.add(fragment);
+            if (covered) {
+                for (String term : fragment.getTerms()) {
+                    fragmentsPerTerm.merge(term, -1, Integer::sum);
+                }
             } else {
                 finalFragments.add(fragment);
             }
@@ -234,13 +444,13 @@ public class HighlighterService {
     }
 
 
-    private Fragment buildFragment(OffsetAttribute offsetAttribute, String content, List<String> clauses, String term)
-            throws IOException {
+    private Fragment buildFragment(Token match, String content, Set<String> clauses,
+                                   Map<String, String> analyzedWords) throws IOException {
         Fragment fragment = new Fragment();
-        fragment.getTerms().add(term);
+        fragment.getTerms().add(match.getToken());
 
-        int startOffset = offsetAttribute.startOffset();
-        int endOffset = offsetAttribute.endOffset();
+        int startOffset = match.getStartOffset();
+        int endOffset = match.getEndOffset();
 
         List<String> firstWords = getFirstWordsOfFragmentsWindow(content, startOffset);
         List<String> lastWords = getLastWordOfFragmentsWindow(content, endOffset);
@@ -249,17 +459,11 @@ public class HighlighterService {
         words.addAll(lastWords);
 
         for (String word : words) {
-            TokenStream tokenStream = new RomanianAnalyzerWithASCIIFolding().tokenStream(null, new StringReader(word));
-            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
-
-            resetAndIncrementToken(tokenStream);
-
-            String termAttribute = charTermAttribute.toString();
+            String termAttribute = analyzeWord(word, analyzedWords);
 
             if (clauses.contains(termAttribute)) {
                 fragment.getTerms().add(termAttribute);
             }
-            tokenStream.close();
         }
 
         String beforeFragments = String.join(SPACE_STRING, firstWords);
@@ -279,18 +483,65 @@ public class HighlighterService {
         fragment.setEndOffset(end);
     }
 
+    /**
+     * Same words as splitting the trimmed content before {@code startOffset} on spaces and keeping the last
+     * {@link Constants#CONTEXT_WINDOW_LENGTH}, but only scans back as far as the window reaches.
+     */
     private List<String> getFirstWordsOfFragmentsWindow(String content, int startOffset) {
-        List<String> beginWords = Arrays.asList(content.substring(0, startOffset).trim().split(SPACE_STRING));
+        int end = startOffset;
+        while (end > 0 && isWhitespace(content.charAt(end - 1))) {
+            end--;
+        }
+
+        int begin = end;
+        int spaces = 0;
+        while (begin > 0 && !(content.charAt(begin - 1) == ' ' && ++spaces == Constants.CONTEXT_WINDOW_LENGTH)) {
+            begin--;
+        }
+        if (begin == 0) {
+            while (begin < end && isWhitespace(content.charAt(begin))) {
+                begin++;
+            }
+        }
+
+        List<String> beginWords = Arrays.asList(content.substring(begin, end).split(SPACE_STRING, -1));
         return beginWords.subList(Math.max(0, beginWords.size() - Constants.CONTEXT_WINDOW_LENGTH), beginWords.size());
     }
 
+    /**
+     * Same words as splitting the trimmed content after {@code endOffset} on spaces and keeping the first
+     * {@link Constants#CONTEXT_WINDOW_LENGTH}, but only scans forward as far as the window reaches.
+     */
     private List<String> getLastWordOfFragmentsWindow(String content, int endOffset) {
-        List<String> endWords = Arrays.asList(content.substring(endOffset).trim().split(SPACE_STRING));
+        int begin = endOffset;
+        while (begin < content.length() && isWhitespace(content.charAt(begin))) {
+            begin++;
+        }
+
+        int end = begin;
+        int spaces = 0;
+        while (end < content.length() && !(content.charAt(end) == ' ' && ++spaces == Constants.CONTEXT_WINDOW_LENGTH)) {
+            end++;
+        }
+        if (end == content.length()) {
+            while (end > begin && isWhitespace(content.charAt(end - 1))) {
+                end--;
+            }
+        }
+
+        List<String> endWords = Arrays.asList(content.substring(begin, end).split(SPACE_STRING, -1));
         return endWords.subList(0, Math.min(Constants.CONTEXT_WINDOW_LENGTH, endWords.size()));
     }
 
+    /**
+     * Whitespace as understood by {@link String#trim()}.
+     */
+    private boolean isWhitespace(char character) {
+        return character <= ' ';
+    }
+
     private Query initQuery(String searchQuery) {
-        QueryParser queryParser = new QueryParser(Constants.CONTENT, new RomanianAnalyzerWithASCIIFolding());
+        QueryParser queryParser = new QueryParser(Constants.CONTENT, analyzer);
         try {
             return queryParser.parse(searchQuery);
         } catch (ParseException e) {
@@ -299,66 +550,97 @@ public class HighlighterService {
         return null;
     }
 
-    private List<String> extractClauses(Query query) {
+    /**
+     * The analyzed query terms, hashed since every word of every candidate fragment is looked up in them.
+     */
+    private Set<String> extractClauses(Query query) {
         if (Objects.nonNull(query)) {
-            return Arrays.asList(query.toString().replace(Constants.CONTENT.toLowerCase() + COLON, EMPTY_STRING)
-                    .split(SPACE_STRING));
+            return new LinkedHashSet<>(Arrays.asList(query.toString()
+                    .replace(Constants.CONTENT.toLowerCase() + COLON, EMPTY_STRING).split(SPACE_STRING)));
         }
-        return new ArrayList<>();
+        return new LinkedHashSet<>();
     }
 
 
-    private void resetAndIncrementToken(TokenStream tokenStream) throws IOException {
-        tokenStream.reset();
-        tokenStream.incrementToken();
-    }
-
     private void endAndCloseToken(TokenStream tokenStream) throws IOException {
         tokenStream.end();
         tokenStream.close();
     }
 
-    private Map<String, Integer> getHighlightedBestTokens(Fragment fragment, List<String> clauses) throws IOException {
+    /**
+     * Picks, for every term, the occurrence closest to all the other matches of the fragment, i.e. with the smallest
+     * sum of position distances; ties go to the first occurrence. Positions come in increasing order, so prefix sums
+     * give every occurrence's sum of distances in a single pass.
+     */
+    private Map<String, Integer> getHighlightedBestTokens(Fragment fragment, Set<String> clauses,
+                                                          Map<String, String> analyzedWords) throws IOException {
 
         int position = 0;
         List<Token> tokens = new ArrayList<>();
-        Map<String, Integer> results = new HashMap<>();
+        Map<String, Long> results = new HashMap<>();
         Map<String, Integer> positions = new HashMap<>();
 
         for (String word : fragment.getText().split(SPACE_STRING)) {
-            TokenStream tokenStream = new RomanianAnalyzerWithASCIIFolding().tokenStream(null, new StringReader(word));
-            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
-            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
-
-            resetAndIncrementToken(tokenStream);
-            String term = charTermAttribute.toString();
-            int startOffset = offsetAttribute.startOffset();
-            int endOffset = offsetAttribute.endOffset();
+            String term = analyzeWord(word, analyzedWords);
 
             if (clauses.contains(term)) {
-                tokens.add(new Token(term, startOffset, endOffset, position));
+                tokens.add(new Token(term, 0, 0, position));
             }
-
             position++;
-            tokenStream.close();
         }
 
+        long totalPositions = 0;
         for (Token token : tokens) {
-            int distance = 0;
-            for (Token token1 : tokens) {
-                distance += Math.abs(token1.getPosition() - token.getPosition());
-            }
+            totalPositions += token.getPosition();
+        }
 
-            results.putIfAbsent(token.getToken(), distance);
-            positions.putIfAbsent(token.getToken(), token.getPosition());
+        long positionsBefore = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            long tokenPosition = token.getPosition();
+            long positionsAfter = totalPositions - positionsBefore - tokenPosition;
+            long distance = tokenPosition * i - positionsBefore
+                    + positionsAfter - tokenPosition * (tokens.size() - i - 1);
 
-            if (results.get(token.getToken()) > distance) {
+            Long bestDistance = results.get(token.getToken());
+            if (Objects.isNull(bestDistance) || bestDistance > distance) {
                 results.put(token.getToken(), distance);
                 positions.put(token.getToken(), token.getPosition());
             }
+            positionsBefore += tokenPosition;
         }
 
         return positions;
     }
 
-}
\ No newline at end of file
+    private static class FragmentKey {
+        private final Object segmentKey;
+        private final int segmentDocId;
+        private final Set<String> clauses;
+
+        private FragmentKey(Object segmentKey, int segmentDocId, Set<String> clauses) {
+            this.segmentKey = segmentKey;
+            this.segmentDocId = segmentDocId;
+            this.clauses = clauses;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof FragmentKey)) {
+                return false;
+            }
+            FragmentKey key = (FragmentKey) other;
+            return segmentDocId == key.segmentDocId && segmentKey.equals(key.segmentKey)
+                    && clauses.equals(key.clauses);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(segmentKey, segmentDocId, clauses);
+        }
+    }
+
+}
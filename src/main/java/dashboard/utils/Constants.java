@@ -7,8 +7,9 @@ public class Constants {
     public static final String CONTENT = "content";
     public static final String FILE_NAME = "fileName";
     public static final String PATH = "path";
+    public static final String LAST_MODIFIED = "lastModified";
+    public static final String SIZE = "size";
     public static final int MAX_HITS = 10;
     public static final int CONTEXT_WINDOW_LENGTH = 2;
-    public static final String stopwordsPath = "/Users/ionutmihailescu/My stuff/InformationRetrievalApi/src/main/resources/stopwords.txt";
 
 }
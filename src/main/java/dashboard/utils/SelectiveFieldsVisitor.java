@@ -0,0 +1,39 @@
+package dashboard.utils;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Loads only the given single valued stored fields and stops reading the document as soon as all of them were seen.
+ * Skipped fields are never turned into strings, and fields stored after the requested ones, such as the content of
+ * documents indexed with their content last, are not even decompressed.
+ */
+public class SelectiveFieldsVisitor extends DocumentStoredFieldVisitor {
+
+    private final int fieldCount;
+
+    public SelectiveFieldsVisitor(Set<String> fields) {
+        super(fields);
+        this.fieldCount = fields.size();
+    }
+
+    @Override
+    public Status needsField(FieldInfo fieldInfo) {
+        if (getDocument().getFields().size() >= fieldCount) {
+            return Status.STOP;
+        }
+        return super.needsField(fieldInfo);
+    }
+
+    public static Document load(IndexReader indexReader, int docId, Set<String> fields) throws IOException {
+        SelectiveFieldsVisitor visitor = new SelectiveFieldsVisitor(fields);
+        indexReader.document(docId, visitor);
+        return visitor.getDocument();
+    }
+
+}